@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vavi.apps.appleii.Em6502;
+
+
+/**
+ * Drives the bare {@link Em6502} interpreter loop over a flat 64KB memory.
+ * <p>
+ * The "cycles" counter is the emulated clock per wall-second,
+ * divide it by 10^6 for emulated MHz per host core.
+ * Run with {@code -prof gc} to get the allocation rate of each program.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Em6502Benchmark {
+
+    /** instructions per invocation */
+    static final int INSTRUCTIONS = 10_000;
+
+    @Param({"alu", "zeroPage", "indirect", "bcd", "branch"})
+    public String program;
+
+    /** {@link Em6502#ENGINE_INTERPRETER}, {@link Em6502#ENGINE_TRANSLATOR} or {@link Em6502#ENGINE_PREDECODED} */
+    @Param({"0", "1", "2"})
+    public int engine;
+
+    private Em6502 cpu;
+
+    /** emulated work done, reported per second */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long cycles;
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            cycles = 0;
+            instructions = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cpu = new Em6502();
+        // extra page for abs,X / abs,Y wrapping past $FFFF
+        cpu.mem = new byte[0x10100];
+        Programs.load(program, cpu.mem);
+        cpu.PC = Programs.ORIGIN;
+        // after loading, the engine starts with no cached code
+        cpu.setEngine(engine);
+    }
+
+    @Benchmark
+    public int execute(Counters counters) {
+        int clocks = cpu.executeInstructions(INSTRUCTIONS);
+        counters.cycles += clocks;
+        counters.instructions += INSTRUCTIONS;
+        return clocks;
+    }
+}
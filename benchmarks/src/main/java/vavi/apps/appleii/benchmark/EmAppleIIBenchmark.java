@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vavi.apps.appleii.EmAppleII;
+
+
+/**
+ * Drives {@link EmAppleII}, i.e. the interpreter through the Apple II
+ * memory map (bank offsets, I/O page check, dirty tracking).
+ * <p>
+ * {@link #execute} measures the raw instruction loop,
+ * {@link #interval} one emulator refresh interval as {@link EmAppleII#run()} slices it.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmAppleIIBenchmark {
+
+    @Param({"alu", "zeroPage", "indirect", "bcd", "branch"})
+    public String program;
+
+    /** {@link EmAppleII#ENGINE_INTERPRETER}, {@link EmAppleII#ENGINE_TRANSLATOR} or {@link EmAppleII#ENGINE_PREDECODED} */
+    @Param({"0", "1", "2"})
+    public int engine;
+
+    private EmAppleII apple;
+
+    private int clocksPerInterval;
+
+    @Setup
+    public void setup() {
+        apple = new EmAppleII(new NullView());
+        // process the power-on reset before placing the program
+        apple.checkInterrupts();
+        Programs.load(program, apple);
+        apple.PC = Programs.ORIGIN;
+        // after loading, the engine starts with no cached code
+        apple.setEngine(engine);
+
+        clocksPerInterval = apple.getCpuSpeed() * 1000 / apple.getRefreshRate();
+    }
+
+    @Benchmark
+    public int execute(Em6502Benchmark.Counters counters) {
+        int clocks = apple.executeInstructions(Em6502Benchmark.INSTRUCTIONS);
+        counters.cycles += clocks;
+        counters.instructions += Em6502Benchmark.INSTRUCTIONS;
+        return clocks;
+    }
+
+    @Benchmark
+    public int interval(Em6502Benchmark.Counters counters) {
+        int clocksNeeded = clocksPerInterval;
+        while (clocksNeeded > 0) {
+            clocksNeeded -= apple.executeInstructions(1 + (clocksNeeded >> 3));
+        }
+        counters.cycles += clocksPerInterval - clocksNeeded;
+        return clocksNeeded;
+    }
+}
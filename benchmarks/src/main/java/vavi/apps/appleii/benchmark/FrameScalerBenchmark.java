@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vavi.apps.appleii.AppleDisplay;
+import vavi.apps.appleii.FrameScaler;
+
+
+/**
+ * Expands a frame of random palette indices into scaled colors,
+ * {@link FrameScaler#scalar()} vs. {@link FrameScaler#getDefault()} (vectorized).
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class FrameScalerBenchmark {
+
+    @Param({"scalar", "default"})
+    public String scaler;
+
+    @Param({"1", "2", "3", "4"})
+    public int scale;
+
+    private FrameScaler frameScaler;
+
+    private final int[] palette = AppleDisplay.getPalette();
+
+    private final byte[] frame = new byte[AppleDisplay.DISPLAY_SIZE_X * AppleDisplay.DISPLAY_SIZE_Y];
+
+    private int[] dest;
+
+    @Setup
+    public void setup() {
+        frameScaler = scaler.equals("scalar") ? FrameScaler.scalar() : FrameScaler.getDefault();
+        Random random = new Random(1);
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) random.nextInt(AppleDisplay.PALETTE_SIZE);
+        }
+        dest = new int[frame.length * scale * scale];
+    }
+
+    @Benchmark
+    public int[] scale() {
+        frameScaler.scale(frame, palette, dest, scale);
+        return dest;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.benchmark;
+
+import vavi.apps.appleii.AppleDisplay;
+import vavi.apps.appleii.AppleIIGo;
+
+
+/**
+ * View doing nothing, keeps output devices out of the measurements.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+class NullView implements AppleIIGo.View {
+
+    @Override
+    public byte[] createImageBuffer() {
+        return new byte[AppleDisplay.DISPLAY_SIZE_X * AppleDisplay.DISPLAY_SIZE_Y];
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    public void repaintDisplay(int x, int y, int w, int h) {
+    }
+
+    @Override
+    public void getCharSet(int[] buffer, int w, int h, int s) {
+    }
+
+    @Override
+    public void setDisplayScaledSizeX(int w) {
+    }
+
+    @Override
+    public void setDisplayScaledSizeY(int h) {
+    }
+
+    @Override
+    public void debug(Throwable t) {
+        t.printStackTrace();
+    }
+
+    @Override
+    public void debug(String s) {
+    }
+
+    @Override
+    public int initAudio() {
+        return 0;
+    }
+
+    @Override
+    public boolean isAudioAvailable() {
+        return false;
+    }
+
+    @Override
+    public void closeAudio() {
+    }
+
+    @Override
+    public void audioWrite(byte[] buffer, int offset, int length) {
+    }
+}
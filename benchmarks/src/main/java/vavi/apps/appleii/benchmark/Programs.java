@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.benchmark;
+
+import vavi.apps.appleii.EmAppleII;
+
+
+/**
+ * Fixed 6502 memory images for the benchmarks.
+ * <p>
+ * Every program is loaded at {@link #ORIGIN} and loops forever,
+ * so any number of instructions can be executed without leaving it.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+final class Programs {
+
+    private Programs() {
+    }
+
+    /** load address of all programs */
+    static final int ORIGIN = 0x0800;
+
+    /** tight ALU loop */
+    private static final int[] alu = {
+            0x18,               // 0800 CLC
+            0xa9, 0x00,         // 0801 LDA #$00
+            0x69, 0x03,         // 0803 ADC #$03
+            0x29, 0x7f,         // 0805 AND #$7F
+            0x49, 0x55,         // 0807 EOR #$55
+            0x0a,               // 0809 ASL A
+            0x4a,               // 080A LSR A
+            0xe8,               // 080B INX
+            0xc8,               // 080C INY
+            0x4c, 0x03, 0x08,   // 080D JMP $0803
+    };
+
+    /** zero page heavy loop */
+    private static final int[] zeroPage = {
+            0xa2, 0x00,         // 0800 LDX #$00
+            0xb5, 0x10,         // 0802 LDA $10,X
+            0x65, 0x20,         // 0804 ADC $20
+            0x95, 0x10,         // 0806 STA $10,X
+            0xe6, 0x30,         // 0808 INC $30
+            0xa5, 0x30,         // 080A LDA $30
+            0x85, 0x40,         // 080C STA $40
+            0xe8,               // 080E INX
+            0x4c, 0x02, 0x08,   // 080F JMP $0802
+    };
+
+    /** indirect indexed copy of $2000-$20FF to $4000-$40FF */
+    private static final int[] indirect = {
+            0xa9, 0x00,         // 0800 LDA #$00
+            0x85, 0x00,         // 0802 STA $00
+            0xa9, 0x20,         // 0804 LDA #$20
+            0x85, 0x01,         // 0806 STA $01
+            0xa9, 0x00,         // 0808 LDA #$00
+            0x85, 0x02,         // 080A STA $02
+            0xa9, 0x40,         // 080C LDA #$40
+            0x85, 0x03,         // 080E STA $03
+            0xa0, 0x00,         // 0810 LDY #$00
+            0xb1, 0x00,         // 0812 LDA ($00),Y
+            0x91, 0x02,         // 0814 STA ($02),Y
+            0xc8,               // 0816 INY
+            0xd0, 0xf9,         // 0817 BNE $0812
+            0x4c, 0x10, 0x08,   // 0819 JMP $0810
+    };
+
+    /** decimal mode arithmetic */
+    private static final int[] bcd = {
+            0xf8,               // 0800 SED
+            0xa9, 0x00,         // 0801 LDA #$00
+            0x18,               // 0803 CLC
+            0x69, 0x19,         // 0804 ADC #$19
+            0x38,               // 0806 SEC
+            0xe9, 0x07,         // 0807 SBC #$07
+            0x4c, 0x03, 0x08,   // 0809 JMP $0803
+    };
+
+    /** branch heavy loop, taken and not taken */
+    private static final int[] branch = {
+            0xa2, 0x00,         // 0800 LDX #$00
+            0xe8,               // 0802 INX
+            0x8a,               // 0803 TXA
+            0x29, 0x01,         // 0804 AND #$01
+            0xf0, 0x02,         // 0806 BEQ $080A
+            0xa0, 0x01,         // 0808 LDY #$01
+            0x8a,               // 080A TXA
+            0x30, 0x02,         // 080B BMI $080F
+            0x10, 0x00,         // 080D BPL $080F
+            0xe0, 0xf0,         // 080F CPX #$F0
+            0x90, 0xef,         // 0811 BCC $0802
+            0xa2, 0x00,         // 0813 LDX #$00
+            0x4c, 0x02, 0x08,   // 0815 JMP $0802
+    };
+
+    /**
+     * @param name one of "alu", "zeroPage", "indirect", "bcd", "branch"
+     * @throws IllegalArgumentException unknown name
+     */
+    static int[] get(String name) {
+        return switch (name) {
+            case "alu" -> alu;
+            case "zeroPage" -> zeroPage;
+            case "indirect" -> indirect;
+            case "bcd" -> bcd;
+            case "branch" -> branch;
+            default -> throw new IllegalArgumentException(name);
+        };
+    }
+
+    /** Copies the program to {@link #ORIGIN} of the flat memory. */
+    static void load(String name, byte[] mem) {
+        int[] program = get(name);
+        for (int i = 0; i < program.length; i++) {
+            mem[ORIGIN + i] = (byte) program[i];
+        }
+    }
+
+    /** Copies the program to {@link #ORIGIN} of the main memory of a machine. */
+    static void load(String name, EmAppleII apple) {
+        int[] program = get(name);
+        for (int i = 0; i < program.length; i++) {
+            apple.physicalWrite(ORIGIN + i, program[i]);
+        }
+    }
+}
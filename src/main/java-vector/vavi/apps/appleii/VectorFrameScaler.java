@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import static vavi.apps.appleii.ScalarFrameScaler.checkScale;
+import static vavi.apps.appleii.ScalarFrameScaler.copyLines;
+
+
+/**
+ * {@link FrameScaler} by the Vector API, loaded by {@link FrameScaler#getDefault()}
+ * only, it fails to load unless the jdk.incubator.vector module is added.
+ * It is built by the vector profile only.
+ * <p>
+ * The indices of a line are widened to ints, the colors of a lane wide run
+ * of them are gathered from the palette, the run is widened by rearranging it
+ * into scale vectors and the line is repeated by copying.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+final class VectorFrameScaler implements FrameScaler {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /** of the same shape, a vector of indices converts into several int ones */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(byte.class, SPECIES.vectorShape());
+
+    /** [scale][part], the lanes of part of a run widened by scale */
+    private final VectorShuffle<Integer>[][] shuffles;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    VectorFrameScaler() {
+        int lanes = SPECIES.length();
+        shuffles = new VectorShuffle[MAX_SCALE + 1][];
+        for (int scale = 1; scale <= MAX_SCALE; scale++) {
+            shuffles[scale] = new VectorShuffle[scale];
+            for (int part = 0; part < scale; part++) {
+                int from = part * lanes;
+                int s = scale;
+                shuffles[scale][part] = VectorShuffle.fromOp(SPECIES, lane -> (from + lane) / s);
+            }
+        }
+    }
+
+    @Override
+    public void scale(byte[] frame, int[] palette, int[] dest, int scale) {
+        checkScale(scale);
+
+        int width = AppleDisplay.DISPLAY_SIZE_X;
+        int destWidth = width * scale;
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(width);
+        int byteLanes = BYTE_SPECIES.length();
+        int byteBound = BYTE_SPECIES.loopBound(width);
+        VectorShuffle<Integer>[] parts = shuffles[scale];
+        // indices of a line as ints for the gather
+        int[] indices = new int[width];
+        int destOffset = 0;
+        for (int offset = 0; offset < frame.length; offset += width) {
+            int x = 0;
+            for (; x < byteBound; x += byteLanes) {
+                ByteVector bytes = ByteVector.fromArray(BYTE_SPECIES, frame, offset + x);
+                for (int part = 0; part < byteLanes / lanes; part++) {
+                    // ZERO_EXTEND_B2I fails on jdk 17, so sign extended and masked
+                    ((IntVector) bytes.convert(VectorOperators.B2I, part)).and(0xff)
+                            .intoArray(indices, x + part * lanes);
+                }
+            }
+            for (; x < width; x++) {
+                indices[x] = frame[offset + x] & 0xff;
+            }
+
+            x = 0;
+            for (; x < bound; x += lanes) {
+                IntVector colors = IntVector.fromArray(SPECIES, palette, 0, indices, x);
+                int to = destOffset + x * scale;
+                if (scale == 1) {
+                    colors.intoArray(dest, to);
+                } else {
+                    for (int part = 0; part < scale; part++) {
+                        colors.rearrange(parts[part]).intoArray(dest, to + part * lanes);
+                    }
+                }
+            }
+            for (; x < width; x++) {
+                int to = destOffset + x * scale;
+                int color = palette[indices[x]];
+                for (int i = 0; i < scale; i++) {
+                    dest[to + i] = color;
+                }
+            }
+
+            copyLines(dest, destOffset, destWidth, scale);
+            destOffset += destWidth * scale;
+        }
+    }
+}
@@ -7,8 +7,11 @@
 
 package vavi.apps.appleii;
 
-import java.awt.Color;
-import java.awt.Graphics;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
@@ -23,6 +26,8 @@ public class AppleDisplay implements Runnable {
     // Configuration variables
     public static final int COLORMODE_GREEN = 0;
     public static final int COLORMODE_COLOR = 1;
+    /** color with hires colors decoded from the composite signal, artifact colors included */
+    public static final int COLORMODE_NTSC = 2;
 
     private int colorMode;
     private boolean isGlare;
@@ -37,9 +42,31 @@ public class AppleDisplay implements Runnable {
 
     private boolean isPrecalcRequested = true;
     private boolean isRefreshRequested = true;
+    /** character rows rendered into the back buffer, bit n is row n */
+    private int renderedRows;
+    /** character rows changed since the last repaint */
+    private int changedRows;
+
+    // Frame timing, the display renders at the end of emulated frames
+    /** emulated frames skipped between rendered ones while the emulator is not throttled */
+    private int warpFrameSkip = 15;
+    /** frames to skip before the next rendered one, emulator thread */
+    private int framesToSkip;
+    /** an emulated frame is to be rendered */
+    private volatile boolean isFrameReady;
+
+    // Scan line rendering, modes changed while the beam is drawing are rendered by line
+    private volatile boolean isScanlineRendering;
+    /** graphics mode of each line of the frames ended, from the emulator thread */
+    private final FrameBuffer<int[]> lineModeBuffer = new FrameBuffer<>(() -> new int[EmAppleII.VISIBLE_LINES]);
+    /** graphics mode each line has been rendered with */
+    private final int[] renderedLineModes = new int[EmAppleII.VISIBLE_LINES];
 
     // Graphics interface variables
-    private final boolean[] graphicsDirty = new boolean[0x6000 >> 7];
+    /** blocks to render, bit n is 0x80 bytes at n * 0x80 */
+    private final long[] graphicsDirty = new long[EmAppleII.GRAPHICS_DIRTY_WORDS];
+    /** blocks written by the emulator and not checked yet */
+    private final long[] graphicsWritten = new long[EmAppleII.GRAPHICS_DIRTY_WORDS];
     private int graphicsMode;
 
     // Display
@@ -50,11 +77,16 @@ public class AppleDisplay implements Runnable {
     public static final int DISPLAY_SIZE_X = DISPLAY_CHAR_COUNT_X * DISPLAY_CHAR_SIZE_X;
     public static final int DISPLAY_SIZE_Y = DISPLAY_CHAR_COUNT_Y * DISPLAY_CHAR_SIZE_Y;
 
-    // Display composition
-    private final int[] displayImageBuffer;
+    // Display composition, the back buffer of frameBuffer, pixels are indices into the palette
+    private final FrameBuffer<byte[]> frameBuffer;
+    private byte[] displayImageBuffer;
 
-    public int[] getDisplayImageBuffer() {
-        return displayImageBuffer;
+    /**
+     * Rendered frames for the view or another consumer,
+     * pixels are indices into {@link #getPalette()}
+     */
+    public FrameBuffer<byte[]> getFrameBuffer() {
+        return frameBuffer;
     }
 
     // Display scale
@@ -62,8 +94,8 @@ public class AppleDisplay implements Runnable {
     private int displayScaledSizeX;
     private int displayScaledSizeY;
 
-    // Display palette
-    private int[] displayPalette;
+    // Display palette, indices of the colors of the color mode
+    private byte[] displayPalette;
     private static final int[] displayPaletteGreen = {
             0x000000, 0x0e470e, 0x041204, 0x166e16,
             0x0f4a0f, 0x115411, 0x0c3b0c, 0x1f9e1f,
@@ -76,6 +108,24 @@ public class AppleDisplay implements Runnable {
             0x885500, 0xff6600, 0xaaaaaa, 0xff9988,
             0x11dd00, 0xffff00, 0x44ff99, 0xffffff
     };
+    /** colors of the palette */
+    public static final int PALETTE_SIZE = 0x20 + 0x10 * 0xf / 2;
+    /**
+     * the green colors, the color ones, then the mixes of two color ones for NTSC,
+     * the index of a green or a color color is color mode * 16 + color
+     */
+    private static final int[] palette = new int[PALETTE_SIZE];
+    /** display palette per color mode */
+    private static final byte[][] displayPalettes = new byte[3][0x10];
+    /** mix of two colors of the color palette */
+    private static final byte[][] ntscPalette = new byte[0x10][0x10];
+
+    /**
+     * Palette of the rendered frames, 0xRRGGBB
+     */
+    public static int[] getPalette() {
+        return palette.clone();
+    }
 
     // Character stuff
     private static final int CHARSET_CHAR_SIZE_X = 8;
@@ -87,13 +137,20 @@ public class AppleDisplay implements Runnable {
     private static final int CHARMAP_FLASH = 1;
     private static final int CHARMAP_ALT = 2;
 
-    private final int[] charSet = new int[CHARSET_SIZE_X * CHARSET_CHAR_SIZE_Y];
+    /** character sets shared by displays, key: view class and color mode */
+    private static final Map<String, byte[]> charSets = new ConcurrentHashMap<>();
+
+    private byte[] charSet;
     private int[] charMap;
-    private final int[][] charMaps = new int[3][0x100];
+    private static final int[][] charMaps = new int[3][0x100];
+    /** characters which differ between the normal and the flash char map */
+    private static final boolean[] flashChars = new boolean[0x100];
     private long charMapFlashCycle = 0;
     private boolean isCharMapFlash = false;
+    /** columns of each text row holding flashing characters when it was rendered, bit n is column n */
+    private final long[] flashCells = new long[DISPLAY_CHAR_COUNT_Y];
 
-    private final int[][] charMapLookup = {
+    private static final int[][] charMapLookup = {
             {0xc0, 0xa0, 0x40, 0x20, 0x40, 0x20, 0x40, 0x60},
             {0xc0, 0xa0, 0xc0, 0xa0, 0x40, 0x20, 0x40, 0x60},
             {0xc0, 0xa0, 0x00, 0xe0, 0x40, 0x20, 0x40, 0x60},
@@ -106,10 +163,14 @@ public class AppleDisplay implements Runnable {
     };
 
     // Hires stuff
-    private final int[] hiresEvenOddToWord = new int[0x200];
+    private static final int[] hiresEvenOddToWord = new int[0x200];
     private final int[] hiresWord = new int[8];
     private final int[] hiresWordNext = new int[8];
-    private final int[] hiresLookup = new int[0x100];    // Bits: [NNccccPP] - Next, current, Previous bits
+    private int[] hiresLookup;    // Bits: [NNccccPP] - Next, current, Previous bits => 4 pixel @ 8 bit palette index output
+    private int[] doubleHiresLookup;
+    /** hiresLookup per color mode, green, color and NTSC */
+    private static final int[][] hiresLookups = new int[3][0x100];
+    private static final int[][] doubleHiresLookups = new int[3][0x100];
     private static final int[] hiresLookupColor = {
             // Bits: [PPNNcccc] - Previous, Next, current bits => 4 pixel @ 4 bit color output
             // Color-bleeding algorithm
@@ -148,7 +209,7 @@ public class AppleDisplay implements Runnable {
             0x0000, 0x0001, 0x0020, 0x0033, 0x0400, 0x0505, 0x0660, 0x0777, 0x8000, 0x9009, 0xa0a0, 0xb0bb, 0xcc00, 0xdd0d, 0xeeee, 0xffff, // 10cccc11
             0x0000, 0x000f, 0x00f0, 0x00ff, 0x0f00, 0x0f0f, 0x0ff0, 0x0fff, 0xf000, 0xf00f, 0xf0f0, 0xf0ff, 0xff00, 0xff0f, 0xfff0, 0xffff, // 11cccc11
     };
-    private int[] doubleHiresPalette;
+    private static final byte[][] doubleHiresPalettes = new byte[2][0x10];
     private static final int[] doubleHiresPaletteColor = {
             0x000000, 0x000099, 0x007722, 0x2222ff,
             0x885500, 0xaaaaaa, 0x11dd00, 0x44ff99,
@@ -156,9 +217,21 @@ public class AppleDisplay implements Runnable {
             0xff6600, 0xff9988, 0xffff00, 0xffffff,
     };
 
+    static {
+        // Palette
+        precalcPalettes();
+
+        // Character maps
+        precalcCharMaps();
+
+        // Hires
+        precalcHiresEvenEddToWord();
+        precalcHiresLookups();
+    }
+
     // Thread stuff
     private boolean isPaused = true;
-    private Thread thread;
+    private volatile Thread thread;
 
     /**
      * AppleDisplay class constructor
@@ -168,14 +241,11 @@ public class AppleDisplay implements Runnable {
     public AppleDisplay(EmAppleII apple) {
         this.apple = apple;
 
-        // Create display image
-        displayImageBuffer = apple.view.createImageBuffer();
-
-        // Character maps
-        precalcCharMaps();
+        // Create display images
+        frameBuffer = new FrameBuffer<>(apple.view::createImageBuffer);
+        displayImageBuffer = frameBuffer.getBackBuffer();
 
-        // Hires
-        precalcHiresEvenEddToWord();
+        apple.setFrameListener(this::onFrame);
 
         // Set parameters
         setScale(1.0f);
@@ -228,6 +298,22 @@ public class AppleDisplay implements Runnable {
         refreshInterval = (int) (1000.0 / value);
     }
 
+    /**
+     * Set emulated frames skipped between rendered ones when the emulator is not throttled,
+     * e.g. warp or fast disk access. At a throttled pacing it follows the refresh rate.
+     */
+    public void setWarpFrameSkip(int value) {
+        if (value < 0) {
+            return;
+        }
+
+        warpFrameSkip = value;
+    }
+
+    public int getWarpFrameSkip() {
+        return warpFrameSkip;
+    }
+
     /**
      * Get refresh rate
      */
@@ -243,6 +329,24 @@ public class AppleDisplay implements Runnable {
         isPrecalcRequested = true;
     }
 
+    /**
+     * Set scan line rendering, each line is rendered in the graphics mode
+     * it was drawn with, e.g. a split screen made by switching modes mid frame.
+     * Frames drawn in one mode are rendered as without it.
+     */
+    public void setScanlineRendering(boolean value) {
+        isScanlineRendering = value;
+        apple.setLineModesTracked(value);
+        isPrecalcRequested = true;
+    }
+
+    /**
+     * Get scan line rendering
+     */
+    public boolean isScanlineRendering() {
+        return isScanlineRendering;
+    }
+
     /**
      * Get color mode
      */
@@ -261,6 +365,7 @@ public class AppleDisplay implements Runnable {
         isPaused = value;
         if (isPaused) {
             try {
+                LockSupport.unpark(thread);
                 thread.join(1000);
             } catch (InterruptedException e) {
             }
@@ -339,6 +444,15 @@ public class AppleDisplay implements Runnable {
     public void run() {
         try {
             while (!isPaused) {
+                // Waits for a frame, when none comes in twice the refresh interval,
+                // e.g. the emulator is paused or stepped, it refreshes anyway
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refreshInterval * 2);
+                long wait;
+                while (!isFrameReady && !isPaused && (wait = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                isFrameReady = false;
+
                 long refreshStart = System.currentTimeMillis();
                 long refreshDelay;
 
@@ -352,10 +466,6 @@ public class AppleDisplay implements Runnable {
                     refreshDelayPerSecond = refreshDelayCumulative;
                     refreshDelayCumulative = refreshCycle = 0;
                 }
-
-                if (refreshDelay < refreshInterval) {
-                    Thread.sleep(refreshInterval - refreshDelay);
-                }
             }
         } catch (Throwable e) {
             apple.view.debug(e);
@@ -364,22 +474,79 @@ public class AppleDisplay implements Runnable {
     }
 
     /**
-     * Paint stat info
+     * Renders a frame on the caller's thread, the display must be paused
+     */
+    public void refresh() {
+        isFrameReady = false;
+        refreshDisplay();
+    }
+
+    /**
+     * Has an emulated frame to be rendered ended since the last refresh,
+     * for a caller driving {@link #refresh()}
      */
-    private void drawStatInfo(Graphics g) {
-        final int fontSize = 16;
+    public boolean isFrameReady() {
+        return isFrameReady;
+    }
 
-        g.setColor(Color.WHITE);
+    /**
+     * End of an emulated frame, called on the emulator thread.
+     * At a throttled pacing frames are rendered at about the refresh rate,
+     * otherwise one of every warpFrameSkip + 1.
+     */
+    private void onFrame(Pacing pacing) {
+        if (framesToSkip > 0) {
+            framesToSkip--;
+            return;
+        }
 
-        String statInfo = apple.getStatInfo() + "\n" + getStatInfo();
-        String[] lines = statInfo.split("\n");
+        if (pacing.isThrottled()) {
+            long framesPerSecond = pacing.getClocksPerInterval(apple.getCpuSpeed(), 1000) / EmAppleII.CYCLES_PER_FRAME;
+            framesToSkip = (int) Math.max(0, (framesPerSecond + refreshRate / 2) / refreshRate - 1);
+        } else {
+            framesToSkip = warpFrameSkip;
+        }
+
+        if (isScanlineRendering) {
+            apple.getLineModes(lineModeBuffer.getBackBuffer());
+            lineModeBuffer.publish();
+        }
 
-        int drawPosY = fontSize;
-        for (int lineNo = 0; lineNo < lines.length; lineNo++) {
-            String line = lines[lineNo];
-            g.drawString(line, 0, drawPosY);
-            drawPosY += fontSize;
+        apple.publishGraphicsDirty();
+        isFrameReady = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Text screen as characters, 24 lines of 40 or 80 columns
+     * regardless of the graphics mode
+     */
+    public String getText() {
+        int mode = apple.graphicsMode;
+        boolean isPage2 = ((mode & (EmAppleII.GR_80STORE | EmAppleII.GR_PAGE2)) == EmAppleII.GR_PAGE2);
+        boolean isDoubleTextMode = ((mode & EmAppleII.GR_80CHAR) == EmAppleII.GR_80CHAR);
+        int baseAddress = isPage2 ? EmAppleII.MEM_MAIN_RAM2 : EmAppleII.MEM_MAIN_TEXT;
+
+        StringBuilder text = new StringBuilder(24 * 81);
+        for (int screenCharY = 0; screenCharY < 24; screenCharY++) {
+            int addressStart = baseAddress + textLineAddress[screenCharY];
+            for (int address = addressStart; address < addressStart + 40; address++) {
+                if (isDoubleTextMode) {
+                    text.append(toChar(apple.physicalRead(address + 0x10000)));
+                }
+                text.append(toChar(apple.physicalRead(address)));
+            }
+            text.append('\n');
         }
+        return text.toString();
+    }
+
+    /**
+     * Screen code to character, inverse and flash are shown as normal
+     */
+    private static char toChar(byte value) {
+        int c = value & ((value & 0x80) != 0 ? 0x7f : 0x3f);
+        return (char) (c < 0x20 ? c + 0x40 : c);
     }
 
     /**
@@ -396,23 +563,32 @@ public class AppleDisplay implements Runnable {
             isPrecalcRequested = false;
             precalcDisplay();
             graphicsMode = -1;
+            Arrays.fill(renderedLineModes, -1);
+        }
+
+        // Graphics mode of the frame, a frame drawn in several modes is rendered by line
+        int frameMode = apple.graphicsMode;
+        if (isScanlineRendering) {
+            int[] lineModes = lineModeBuffer.getFrame();
+            if (lineModeBuffer.getSequence() != 0) {
+                frameMode = lineModes[0];
+                if (!isSameMode(lineModes, frameMode)) {
+                    refreshLines(lineModes, updateCharMapFlash());
+                    graphicsMode = -1;
+                    return;
+                }
+            }
         }
 
         // Repaint if graphics mode changes
-        if (graphicsMode != apple.graphicsMode) {
-            graphicsMode = apple.graphicsMode;
+        if (graphicsMode != frameMode) {
+            graphicsMode = frameMode;
             isCharsetUpdateRequested = true;
             isSetHiresDirtyRequested = true;
         }
 
         // Periodic refresh
-        if (charMapFlashCycle <= 0) {
-            charMapFlashCycle = refreshRate / 4 - 1;
-            isCharMapFlash = !isCharMapFlash;
-            isCharsetUpdateRequested = true;
-        } else {
-            charMapFlashCycle--;
-        }
+        boolean isFlashRequested = updateCharMapFlash();
 
         // Some internal variables
         boolean isSomeText = ((graphicsMode & (EmAppleII.GR_TEXT | EmAppleII.GR_MIXMODE)) != 0);
@@ -429,7 +605,7 @@ public class AppleDisplay implements Runnable {
         int baseAddressHires = isPage2 ? EmAppleII.MEM_MAIN_RAM3 : EmAppleII.MEM_MAIN_HIRES;
 
         // Set char map
-        if (isCharsetUpdateRequested) {
+        if (isCharsetUpdateRequested || isFlashRequested) {
             if (isAltChar) {
                 setCharMap(CHARMAP_ALT);
             } else if (isCharMapFlash) {
@@ -438,11 +614,17 @@ public class AppleDisplay implements Runnable {
                 setCharMap(CHARMAP_NORMAL);
             }
 
-            isSetDirtyRequested = true;
-            isRefreshRequested = true;
+            isSetDirtyRequested |= isCharsetUpdateRequested;
+        }
+
+        // Flashing cells only, the alternate char map does not flash
+        isFlashRequested &= !isSetDirtyRequested && isSomeText && !isAltChar;
+        if (isFlashRequested) {
+            isRenderRequested = true;
         }
 
         // Refresh dirty buffers?
+        apple.takeGraphicsDirty(graphicsWritten);
         if (isSetDirtyRequested) {
             if (isSomeText || isSomeLores) {
                 setTextBufferDirty(baseAddressText);
@@ -467,9 +649,9 @@ public class AppleDisplay implements Runnable {
         if (isRenderRequested) {
             if (isSomeText) {
                 if (isDoubleTextMode) {
-                    renderDoubleText(baseAddressText, isMixedMode);
+                    renderDoubleText(baseAddressText, isMixedMode, isFlashRequested);
                 } else {
-                    renderText(baseAddressText, isMixedMode);
+                    renderText(baseAddressText, isMixedMode, isFlashRequested);
             }
             }
 
@@ -487,101 +669,210 @@ public class AppleDisplay implements Runnable {
             }
             }
 
-            isRefreshRequested = true;
+            publish();
+        }
+
+        if (isScanlineRendering) {
+            Arrays.fill(renderedLineModes, graphicsMode);
+        }
+
+        repaint();
+    }
+
+    /**
+     * Publishes the back buffer, the rendered rows whose pixels differ
+     * from the last frame are to be repainted. A dirty block holds parts of
+     * three rows, so this keeps e.g. typing to the row typed in.
+     */
+    private void publish() {
+        byte[] published = frameBuffer.getPublished();
+        for (int screenCharY = 0; renderedRows != 0; screenCharY++, renderedRows >>>= 1) {
+            if ((renderedRows & 1) != 0) {
+                int from = screenCharY * DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
+                int to = from + DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
+                if (Arrays.mismatch(displayImageBuffer, from, to, published, from, to) >= 0) {
+                    changedRows |= 1 << screenCharY;
+                }
+            }
         }
 
+        displayImageBuffer = frameBuffer.publish();
+    }
+
+    /**
+     * Repaints the whole view when requested, otherwise each run of changed rows
+     */
+    private void repaint() {
         if (isRefreshRequested) {
             isRefreshRequested = false;
             apple.view.repaint();
+        } else {
+            while (changedRows != 0) {
+                int top = Integer.numberOfTrailingZeros(changedRows);
+                int rows = Integer.numberOfTrailingZeros(~(changedRows >>> top));
+                apple.view.repaintDisplay(0, top * DISPLAY_CHAR_SIZE_Y, DISPLAY_SIZE_X, rows * DISPLAY_CHAR_SIZE_Y);
+                changedRows &= ~(((1 << rows) - 1) << top);
+            }
+        }
+        changedRows = 0;
+    }
+
+    /**
+     * Flashing characters change at a quarter of the refresh rate
+     *
+     * @return true when they have changed
+     */
+    private boolean updateCharMapFlash() {
+        if (charMapFlashCycle <= 0) {
+            charMapFlashCycle = refreshRate / 4 - 1;
+            isCharMapFlash = !isCharMapFlash;
+            return true;
+        } else {
+            charMapFlashCycle--;
+            return false;
+        }
+    }
+
+    private static boolean isSameMode(int[] lineModes, int mode) {
+        for (int lineMode : lineModes) {
+            if (lineMode != mode) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Display refresh by line, the lines whose mode or memory has changed are rendered
+     *
+     * @param lineModes graphics mode of each line
+     * @param isCharMapFlashed flashing characters have changed
+     */
+    private void refreshLines(int[] lineModes, boolean isCharMapFlashed) {
+        boolean isRenderRequested = false;
+
+        // Lines may show any page
+        apple.takeGraphicsDirty(graphicsWritten);
+        isTextBufferDirty(EmAppleII.MEM_MAIN_TEXT);
+        isTextBufferDirty(EmAppleII.MEM_MAIN_RAM2);
+        isHiresBufferDirty(EmAppleII.MEM_MAIN_HIRES);
+        isHiresBufferDirty(EmAppleII.MEM_MAIN_RAM3);
+
+        int displayOffset = 0;
+        for (int line = 0; line < EmAppleII.VISIBLE_LINES; line++, displayOffset += DISPLAY_SIZE_X) {
+            int mode = lineModes[line];
+            int screenCharY = line / DISPLAY_CHAR_SIZE_Y;
+            int scanLine = line % DISPLAY_CHAR_SIZE_Y;
+
+            boolean isText = ((mode & EmAppleII.GR_TEXT) != 0) ||
+                    ((mode & EmAppleII.GR_MIXMODE) != 0 && screenCharY >= 20);
+            boolean isHires = !isText && ((mode & EmAppleII.GR_HIRES) != 0);
+            boolean isPage2 = ((mode & (EmAppleII.GR_80STORE | EmAppleII.GR_PAGE2)) == EmAppleII.GR_PAGE2);
+            boolean isDoubleTextMode = ((mode & EmAppleII.GR_80CHAR) == EmAppleII.GR_80CHAR);
+            boolean isDoubleGraphicsMode = ((mode & (EmAppleII.GR_80CHAR | EmAppleII.GR_DHIRES)) == (EmAppleII.GR_80CHAR | EmAppleII.GR_DHIRES));
+
+            int baseAddress;
+            if (isHires) {
+                baseAddress = isPage2 ? EmAppleII.MEM_MAIN_RAM3 : EmAppleII.MEM_MAIN_HIRES;
+            } else {
+                baseAddress = isPage2 ? EmAppleII.MEM_MAIN_RAM2 : EmAppleII.MEM_MAIN_TEXT;
+            }
+            int addressStart = baseAddress + textLineAddress[screenCharY];
+
+            if (mode == renderedLineModes[line] && !isGraphicsDirty(addressStart) && !(isText && isCharMapFlashed)) {
+                continue;
+            }
+            renderedLineModes[line] = mode;
+            renderedRows |= 1 << screenCharY;
+            isRenderRequested = true;
+
+            if (isText) {
+                int[] charMap = charMaps[((mode & EmAppleII.GR_ALTCHAR) != 0) ? CHARMAP_ALT :
+                        isCharMapFlash ? CHARMAP_FLASH : CHARMAP_NORMAL];
+                if (isDoubleTextMode) {
+                    renderDoubleTextLine(displayOffset, addressStart, scanLine, charMap);
+                } else {
+                    renderTextLine(displayOffset, addressStart, scanLine, charMap);
+                }
+            } else if (isHires) {
+                if (isDoubleGraphicsMode) {
+                    renderDoubleHiresLine(displayOffset, addressStart + scanLine * 0x400);
+                } else {
+                    renderHiresLine(displayOffset, addressStart + scanLine * 0x400);
+                }
+            } else {
+                if (isDoubleGraphicsMode) {
+                    renderDoubleLoresLine(displayOffset, addressStart, scanLine);
+                } else {
+                    renderLoresLine(displayOffset, addressStart, scanLine);
+                }
+            }
+        }
+
+        if (isRenderRequested) {
+            publish();
         }
+
+        repaint();
     }
 
     /**
      * Set text buffer dirty
      */
     private void setTextBufferDirty(int baseAddress) {
-        // Update dirty
-        int addressStart = baseAddress >> 7;
-        int addressEnd = addressStart + 8;
-        for (int address = addressStart; address < addressEnd; address++) {
-            graphicsDirty[address] = true;
-            apple.graphicsDirty[address] = false;
-        }
+        // Update dirty, the 8 blocks of a page are in one word
+        int block = baseAddress >> 7;
+        long mask = 0xffL << block;
+        graphicsDirty[block >> 6] |= mask;
+        graphicsWritten[block >> 6] &= ~mask;
     }
 
     /**
      * Set hires buffer dirty
      */
     private void setHiresBufferDirty(int baseAddress) {
-        // Update dirty
-        int addressStart = baseAddress >> 7;
-        int addressEnd = addressStart + 8;
-        for (int address = addressStart; address < addressEnd; address++) {
-            graphicsDirty[address] = true;
-            apple.graphicsDirty[address + (0x0000 >> 7)] = false;
-            apple.graphicsDirty[address + (0x0400 >> 7)] = false;
-            apple.graphicsDirty[address + (0x0800 >> 7)] = false;
-            apple.graphicsDirty[address + (0x0c00 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1000 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1400 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1800 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1c00 >> 7)] = false;
-        }
+        // Update dirty, the 64 blocks of a page are one word
+        int block = baseAddress >> 7;
+        graphicsDirty[block >> 6] |= 0xffL;
+        graphicsWritten[block >> 6] = 0;
     }
 
     /**
      * Is text buffer dirty?
      */
     private boolean isTextBufferDirty(int baseAddress) {
-        boolean isDirty = false;
-
         // Update dirty
-        int addressStart = baseAddress >> 7;
-        int addressEnd = addressStart + 8;
-        for (int address = addressStart; address < addressEnd; address++) {
-            graphicsDirty[address] = apple.graphicsDirty[address];
-            apple.graphicsDirty[address] = false;
-            if (graphicsDirty[address]) {
-                isDirty = true;
-        }
-        }
+        int block = baseAddress >> 7;
+        long mask = 0xffL << block;
+        long written = graphicsWritten[block >> 6] & mask;
+        graphicsDirty[block >> 6] = (graphicsDirty[block >> 6] & ~mask) | written;
+        graphicsWritten[block >> 6] &= ~mask;
 
-        return isDirty;
+        return written != 0;
     }
 
     /**
      * Is hires buffer dirty?
      */
     private boolean isHiresBufferDirty(int baseAddress) {
-        boolean isDirty = false;
-
-        // Update dirty
-        int addressStart = baseAddress >> 7;
-        int addressEnd = addressStart + 8;
-        for (int address = addressStart; address < addressEnd; address++) {
-            graphicsDirty[address] =
-                    apple.graphicsDirty[address + (0x0000 >> 7)] ||
-                            apple.graphicsDirty[address + (0x0400 >> 7)] ||
-                            apple.graphicsDirty[address + (0x0800 >> 7)] ||
-                            apple.graphicsDirty[address + (0x0c00 >> 7)] ||
-                            apple.graphicsDirty[address + (0x1000 >> 7)] ||
-                            apple.graphicsDirty[address + (0x1400 >> 7)] ||
-                            apple.graphicsDirty[address + (0x1800 >> 7)] ||
-                            apple.graphicsDirty[address + (0x1c00 >> 7)];
-            apple.graphicsDirty[address + (0x0000 >> 7)] = false;
-            apple.graphicsDirty[address + (0x0400 >> 7)] = false;
-            apple.graphicsDirty[address + (0x0800 >> 7)] = false;
-            apple.graphicsDirty[address + (0x0c00 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1000 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1400 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1800 >> 7)] = false;
-            apple.graphicsDirty[address + (0x1c00 >> 7)] = false;
-            if (graphicsDirty[address]) {
-                isDirty = true;
-        }
-        }
+        // Update dirty, a text line's block is dirty when any of its 8 scan line blocks 0x400 apart is
+        int block = baseAddress >> 7;
+        long written = graphicsWritten[block >> 6];
+        written |= written >>> 32;
+        written |= written >>> 16;
+        written |= written >>> 8;
+        written &= 0xffL;
+        graphicsDirty[block >> 6] = (graphicsDirty[block >> 6] & ~0xffL) | written;
+        graphicsWritten[block >> 6] = 0;
+
+        return written != 0;
+    }
 
-        return isDirty;
+    /**
+     * Is the block of an address to be rendered?
+     */
+    private boolean isGraphicsDirty(int address) {
+        return (graphicsDirty[address >> 13] & (1L << (address >> 7))) != 0;
     }
 
     /**
@@ -599,7 +890,8 @@ public class AppleDisplay implements Runnable {
         loadCharSet();
 
         // Prepare hires graphics
-        precalcHiresLookup();
+        hiresLookup = hiresLookups[getLookupMode()];
+        doubleHiresLookup = doubleHiresLookups[getLookupMode()];
     }
 
     private static final int CHARSET_SOURCE_CHAR_COUNT = 128;
@@ -607,38 +899,47 @@ public class AppleDisplay implements Runnable {
     private static final int CHARSET_SOURCE_SIZE_Y = CHARSET_CHAR_SIZE_Y;
 
     /**
-     * Precalculate charSet
+     * Precalculate charSet, once per view class and color
      */
     private void loadCharSet() {
+        byte background = displayPalette[0x0];
+        byte foreground = displayPalette[0xf];
+        charSet = charSets.computeIfAbsent(apple.view.getClass().getName() + "/" + colorMode, k -> createCharSet(background, foreground));
+    }
+
+    private byte[] createCharSet(byte background, byte foreground) {
+        int[] image = new int[CHARSET_SIZE_X * CHARSET_CHAR_SIZE_Y];
+        byte[] charSet = new byte[CHARSET_SIZE_X * CHARSET_CHAR_SIZE_Y];
         int charSetOffset = 0;
 
         // Get RGB image
-        apple.view.getCharSet(charSet, CHARSET_SOURCE_SIZE_X, CHARSET_SOURCE_SIZE_Y, CHARSET_SIZE_X);
+        apple.view.getCharSet(image, CHARSET_SOURCE_SIZE_X, CHARSET_SOURCE_SIZE_Y, CHARSET_SIZE_X);
 
-        // Duplicate and invert
+        // Colorize, duplicate and invert
         for (int charSetPosY = 0; charSetPosY < CHARSET_SIZE_Y; charSetPosY++) {
             for (int charSetPosX = 0; charSetPosX < CHARSET_SOURCE_SIZE_X; charSetPosX++) {
-                charSet[charSetOffset + CHARSET_SOURCE_SIZE_X + charSetPosX] =
-                        charSet[charSetOffset + charSetPosX] ^ 0xffffff;
+                boolean isLit = (image[charSetOffset + charSetPosX] & 0xffffff) != 0;
+                charSet[charSetOffset + charSetPosX] = isLit ? foreground : background;
+                charSet[charSetOffset + CHARSET_SOURCE_SIZE_X + charSetPosX] = isLit ? background : foreground;
             }
             charSetOffset += CHARSET_SIZE_X;
         }
-
-        // Colorize
-        for (charSetOffset = 0; charSetOffset < (CHARSET_SIZE_X * CHARSET_SIZE_Y); charSetOffset++) {
-            charSet[charSetOffset] &= (displayPalette[0xf] | 0xff000000);
-    }
+        return charSet;
     }
 
     /**
      * Precalculate char map
      */
-    private void precalcCharMaps() {
+    private static void precalcCharMaps() {
         for (int index = 0; index < 3; index++) {
             for (int character = 0; character < 0x100; character++) {
                 charMaps[index][character] = charMapLookup[index][character >> 5] + (character & 0x1f);
+            }
+        }
+
+        for (int character = 0; character < 0x100; character++) {
+            flashChars[character] = charMaps[CHARMAP_NORMAL][character] != charMaps[CHARMAP_FLASH][character];
         }
-    }
     }
 
     /**
@@ -652,14 +953,61 @@ public class AppleDisplay implements Runnable {
      * Set lores palette
      */
     private void setDisplayPalette() {
-        displayPalette = (colorMode == COLORMODE_COLOR) ? displayPaletteColor : displayPaletteGreen;
-        doubleHiresPalette = (colorMode == COLORMODE_COLOR) ? doubleHiresPaletteColor : displayPaletteGreen;
+        displayPalette = displayPalettes[getLookupMode()];
+    }
+
+    /**
+     * Color mode of the precalculated tables, unknown ones are green
+     */
+    private int getLookupMode() {
+        return (colorMode == COLORMODE_COLOR || colorMode == COLORMODE_NTSC) ? colorMode : COLORMODE_GREEN;
+    }
+
+    /**
+     * Precalculate palette and its indices, double hires color is the color palette in another order
+     */
+    private static void precalcPalettes() {
+        System.arraycopy(displayPaletteGreen, 0, palette, COLORMODE_GREEN * 0x10, 0x10);
+        System.arraycopy(displayPaletteColor, 0, palette, COLORMODE_COLOR * 0x10, 0x10);
+
+        for (int color = 0; color < 0x10; color++) {
+            displayPalettes[COLORMODE_GREEN][color] = (byte) (COLORMODE_GREEN * 0x10 + color);
+            displayPalettes[COLORMODE_COLOR][color] = (byte) (COLORMODE_COLOR * 0x10 + color);
+            displayPalettes[COLORMODE_NTSC][color] = displayPalettes[COLORMODE_COLOR][color];
+            doubleHiresPalettes[COLORMODE_GREEN][color] = displayPalettes[COLORMODE_GREEN][color];
+            for (int index = 0; index < 0x10; index++) {
+                if (displayPaletteColor[index] == doubleHiresPaletteColor[color]) {
+                    doubleHiresPalettes[COLORMODE_COLOR][color] = (byte) (COLORMODE_COLOR * 0x10 + index);
+                }
+            }
+        }
+
+        // Mixes, a color with itself is the color
+        int index = 0x20;
+        for (int color1 = 0; color1 < 0x10; color1++) {
+            ntscPalette[color1][color1] = displayPalettes[COLORMODE_COLOR][color1];
+            for (int color2 = color1 + 1; color2 < 0x10; color2++) {
+                palette[index] = mixColor(displayPaletteColor[color1], displayPaletteColor[color2]);
+                ntscPalette[color1][color2] = ntscPalette[color2][color1] = (byte) index++;
+            }
+        }
+    }
+
+    /**
+     * Mean of two 0xRRGGBB colors
+     */
+    private static int mixColor(int rgb1, int rgb2) {
+        int rgb = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            rgb |= ((((rgb1 >> shift) & 0xff) + ((rgb2 >> shift) & 0xff) + 1) >> 1) << shift;
+        }
+        return rgb;
     }
 
     /**
      * Precalculate hires even odd to word
      */
-    private void precalcHiresEvenEddToWord() {
+    private static void precalcHiresEvenEddToWord() {
         for (int value = 0; value < 0x200; value++) {
             hiresEvenOddToWord[value] =
                     ((value & 0x01) << 0) |
@@ -685,22 +1033,51 @@ public class AppleDisplay implements Runnable {
     }
 
     /**
-     * Precalculate hires
+     * Precalculate hires for all color modes, a pixel is a byte of the palette indices.
+     * <p>
+     * Green shows the dots. Color gives a pixel the color of the 4 dots, a color cycle
+     * of the signal, from 2 dots before it, see hiresLookupColor. NTSC decodes the
+     * signal with a color cycle centered on the pixel instead, the dots at both ends
+     * count half. As decoding is linear, that is the mix of the colors of the pixel
+     * and the next one, the window is wide enough for the next one of the last pixel.
      */
-    private void precalcHiresLookup() {
-        if (colorMode == COLORMODE_COLOR) {
-            for (int value = 0; value < 0x100; value++) {
-                hiresLookup[value] = hiresLookupColor[((value << 6) & 0xff) | (value >> 2)];
+    private static void precalcHiresLookups() {
+        for (int value = 0; value < 0x100; value++) {
+            int colors = hiresLookupColor[((value << 6) & 0xff) | (value >> 2)];
+            for (int pixel = 0; pixel < 4; pixel++) {
+                int shift = pixel * 8;
+
+                int dot = ((value & (0x04 << pixel)) != 0) ? 0xf : 0;
+                hiresLookups[COLORMODE_GREEN][value] |= (displayPalettes[COLORMODE_GREEN][dot] & 0xff) << shift;
+                doubleHiresLookups[COLORMODE_GREEN][value] |= (doubleHiresPalettes[COLORMODE_GREEN][dot] & 0xff) << shift;
+
+                int color = (colors >> (pixel * 4)) & 0xf;
+                hiresLookups[COLORMODE_COLOR][value] |= (displayPalettes[COLORMODE_COLOR][color] & 0xff) << shift;
+                doubleHiresLookups[COLORMODE_COLOR][value] |= (doubleHiresPalettes[COLORMODE_COLOR][color] & 0xff) << shift;
+
+                int colorNext = getCycleColor(value, pixel + 1);
+                hiresLookups[COLORMODE_NTSC][value] |= (ntscPalette[color][colorNext] & 0xff) << shift;
+                doubleHiresLookups[COLORMODE_NTSC][value] |= (ntscPalette
+                        [doubleHiresPalettes[COLORMODE_COLOR][color] - COLORMODE_COLOR * 0x10]
+                        [doubleHiresPalettes[COLORMODE_COLOR][colorNext] - COLORMODE_COLOR * 0x10] & 0xff) << shift;
             }
-        } else {
-            for (int value = 0; value < 0x100; value++) {
-                hiresLookup[value] =
-                        (((value & 0x04) != 0) ? 0x000f : 0) |
-                                (((value & 0x08) != 0) ? 0x00f0 : 0) |
-                                (((value & 0x10) != 0) ? 0x0f00 : 0) |
-                                (((value & 0x20) != 0) ? 0xf000 : 0);
         }
     }
+
+    /**
+     * Color of the 4 dots from 2 dots before a pixel of a hires window [NNccccPP],
+     * a dot is the color bit of its position in the color cycle
+     *
+     * @param pixel 0 to 3, 4 for the first pixel of the next window
+     */
+    private static int getCycleColor(int value, int pixel) {
+        int color = 0;
+        for (int dot = pixel; dot < pixel + 4; dot++) {
+            if ((value & (1 << dot)) != 0) {
+                color |= 1 << ((dot + 2) & 3);
+            }
+        }
+        return color;
     }
 
     /**
@@ -741,7 +1118,10 @@ public class AppleDisplay implements Runnable {
         renderTextScanLine(destOffset, sourceOffset);
     }
 
-    private void renderText(int baseAddress, boolean isMixedMode) {
+    /**
+     * @param isFlashRequested the cells of the rows not dirty holding flashing characters are rendered too
+     */
+    private void renderText(int baseAddress, boolean isMixedMode, boolean isFlashRequested) {
         int screenCharY, screenCharYStart = isMixedMode ? 20 : 0;
         int displayOffset;
         int address, addressEnd, addressStart;
@@ -750,20 +1130,44 @@ public class AppleDisplay implements Runnable {
         for (screenCharY = screenCharYStart; screenCharY < 24; screenCharY++) {
             addressStart = baseAddress + textLineAddress[screenCharY];
 
-            if (graphicsDirty[addressStart >> 7]) {
+            if (isGraphicsDirty(addressStart)) {
+                renderedRows |= 1 << screenCharY;
                 addressEnd = addressStart + 40;
 
+                long flashing = 0;
                 for (address = addressStart; address < addressEnd; address++) {
-                    renderTextCharacter(displayOffset, charMap[apple.mem[address] & 0xff] << 3);
+                    int character = apple.physicalRead(address) & 0xff;
+                    renderTextCharacter(displayOffset, charMap[character] << 3);
+                    if (flashChars[character]) {
+                        flashing |= 1L << (address - addressStart);
+                    }
                     displayOffset += DISPLAY_CHAR_SIZE_X * 2;
                 }
+                flashCells[screenCharY] = flashing;
                 displayOffset += (DISPLAY_CHAR_SIZE_Y - 1) * DISPLAY_SIZE_X;
+            } else if (isFlashRequested && flashCells[screenCharY] != 0) {
+                renderedRows |= 1 << screenCharY;
+
+                for (long cells = flashCells[screenCharY]; cells != 0; cells &= cells - 1) {
+                    int column = Long.numberOfTrailingZeros(cells);
+                    renderTextCharacter(displayOffset + column * DISPLAY_CHAR_SIZE_X * 2,
+                            charMap[apple.physicalRead(addressStart + column) & 0xff] << 3);
+                }
+                displayOffset += DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
             } else {
                 displayOffset += DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
         }
     }
     }
 
+    private void renderTextLine(int displayOffset, int addressStart, int scanLine, int[] charMap) {
+        int addressEnd = addressStart + 40;
+        for (int address = addressStart; address < addressEnd; address++) {
+            renderTextScanLine(displayOffset, (charMap[apple.physicalRead(address) & 0xff] << 3) + scanLine * CHARSET_SIZE_X);
+            displayOffset += DISPLAY_CHAR_SIZE_X * 2;
+        }
+    }
+
     /**
      * Render double text canvas
      */
@@ -802,7 +1206,10 @@ public class AppleDisplay implements Runnable {
         renderDoubleTextScanLine(destOffset, sourceOffset);
     }
 
-    private void renderDoubleText(int baseAddress, boolean isMixedMode) {
+    /**
+     * @param isFlashRequested the cells of the rows not dirty holding flashing characters are rendered too
+     */
+    private void renderDoubleText(int baseAddress, boolean isMixedMode, boolean isFlashRequested) {
         int screenCharY, screenCharYStart = isMixedMode ? 20 : 0;
         int displayOffset;
         int address, addressEnd, addressStart;
@@ -811,26 +1218,54 @@ public class AppleDisplay implements Runnable {
         for (screenCharY = screenCharYStart; screenCharY < 24; screenCharY++) {
             addressStart = baseAddress + textLineAddress[screenCharY];
 
-            if (graphicsDirty[addressStart >> 7]) {
+            if (isGraphicsDirty(addressStart)) {
+                renderedRows |= 1 << screenCharY;
                 addressEnd = addressStart + 40;
 
+                long flashing = 0;
                 for (address = addressStart; address < addressEnd; address++) {
-                    renderDoubleTextCharacter(displayOffset, charMap[apple.mem[address + 0x10000] & 0xff] << 3);
+                    int characterAux = apple.physicalRead(address + 0x10000) & 0xff;
+                    int character = apple.physicalRead(address + 0x00000) & 0xff;
+                    renderDoubleTextCharacter(displayOffset, charMap[characterAux] << 3);
                     displayOffset += DISPLAY_CHAR_SIZE_X;
-                    renderDoubleTextCharacter(displayOffset, charMap[apple.mem[address + 0x00000] & 0xff] << 3);
+                    renderDoubleTextCharacter(displayOffset, charMap[character] << 3);
                     displayOffset += DISPLAY_CHAR_SIZE_X;
+                    if (flashChars[characterAux] || flashChars[character]) {
+                        flashing |= 1L << (address - addressStart);
+                    }
                 }
+                flashCells[screenCharY] = flashing;
                 displayOffset += (DISPLAY_CHAR_SIZE_Y - 1) * DISPLAY_SIZE_X;
+            } else if (isFlashRequested && flashCells[screenCharY] != 0) {
+                renderedRows |= 1 << screenCharY;
+
+                for (long cells = flashCells[screenCharY]; cells != 0; cells &= cells - 1) {
+                    int column = Long.numberOfTrailingZeros(cells);
+                    int cellOffset = displayOffset + column * DISPLAY_CHAR_SIZE_X * 2;
+                    renderDoubleTextCharacter(cellOffset, charMap[apple.physicalRead(addressStart + column + 0x10000) & 0xff] << 3);
+                    renderDoubleTextCharacter(cellOffset + DISPLAY_CHAR_SIZE_X, charMap[apple.physicalRead(addressStart + column) & 0xff] << 3);
+                }
+                displayOffset += DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
             } else {
                 displayOffset += DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
         }
     }
     }
 
+    private void renderDoubleTextLine(int displayOffset, int addressStart, int scanLine, int[] charMap) {
+        int addressEnd = addressStart + 40;
+        for (int address = addressStart; address < addressEnd; address++) {
+            renderDoubleTextScanLine(displayOffset, (charMap[apple.physicalRead(address + 0x10000) & 0xff] << 3) + scanLine * CHARSET_SIZE_X);
+            displayOffset += DISPLAY_CHAR_SIZE_X;
+            renderDoubleTextScanLine(displayOffset, (charMap[apple.physicalRead(address + 0x00000) & 0xff] << 3) + scanLine * CHARSET_SIZE_X);
+            displayOffset += DISPLAY_CHAR_SIZE_X;
+        }
+    }
+
     /**
      * Render lores canvas
      */
-    private void renderLoresScanLine(int destOffset, int color) {
+    private void renderLoresScanLine(int destOffset, byte color) {
         displayImageBuffer[destOffset + 0] = color;
         displayImageBuffer[destOffset + 1] = color;
         displayImageBuffer[destOffset + 2] = color;
@@ -840,7 +1275,7 @@ public class AppleDisplay implements Runnable {
         displayImageBuffer[destOffset + 6] = color;
     }
 
-    private void renderLoresBlock(int destOffset, int colorTop, int colorBottom) {
+    private void renderLoresBlock(int destOffset, byte colorTop, byte colorBottom) {
         renderLoresScanLine(destOffset, colorTop);
         destOffset += DISPLAY_SIZE_X;
         renderLoresScanLine(destOffset, colorTop);
@@ -867,17 +1302,18 @@ public class AppleDisplay implements Runnable {
         for (screenCharY = 0; screenCharY < screenCharYEnd; screenCharY++) {
             addressStart = baseAddress + textLineAddress[screenCharY];
 
-            if (graphicsDirty[addressStart >> 7]) {
+            if (isGraphicsDirty(addressStart)) {
+                renderedRows |= 1 << screenCharY;
                 addressEnd = addressStart + 40;
 
                 for (address = addressStart; address < addressEnd; address++) {
                     renderLoresBlock(displayOffset,
-                            displayPalette[apple.mem[address] & 0xf],
-                            displayPalette[(apple.mem[address] & 0xf0) >> 4]);
+                            displayPalette[apple.physicalRead(address) & 0xf],
+                            displayPalette[(apple.physicalRead(address) & 0xf0) >> 4]);
                     displayOffset += DISPLAY_CHAR_SIZE_X;
                     renderLoresBlock(displayOffset,
-                            displayPalette[apple.mem[address] & 0xf],
-                            displayPalette[(apple.mem[address] & 0xf0) >> 4]);
+                            displayPalette[apple.physicalRead(address) & 0xf],
+                            displayPalette[(apple.physicalRead(address) & 0xf0) >> 4]);
                     displayOffset += DISPLAY_CHAR_SIZE_X;
                 }
                 displayOffset += (DISPLAY_CHAR_SIZE_Y - 1) * DISPLAY_SIZE_X;
@@ -887,6 +1323,18 @@ public class AppleDisplay implements Runnable {
     }
     }
 
+    private void renderLoresLine(int displayOffset, int addressStart, int scanLine) {
+        int shift = scanLine < 4 ? 0 : 4;
+        int addressEnd = addressStart + 40;
+        for (int address = addressStart; address < addressEnd; address++) {
+            byte color = displayPalette[(apple.physicalRead(address) >> shift) & 0xf];
+            renderLoresScanLine(displayOffset, color);
+            displayOffset += DISPLAY_CHAR_SIZE_X;
+            renderLoresScanLine(displayOffset, color);
+            displayOffset += DISPLAY_CHAR_SIZE_X;
+        }
+    }
+
     /**
      * Render double lores canvas
      */
@@ -899,17 +1347,18 @@ public class AppleDisplay implements Runnable {
         for (screenCharY = 0; screenCharY < screenCharYEnd; screenCharY++) {
             addressStart = baseAddress + textLineAddress[screenCharY];
 
-            if (graphicsDirty[addressStart >> 7]) {
+            if (isGraphicsDirty(addressStart)) {
+                renderedRows |= 1 << screenCharY;
                 addressEnd = addressStart + 40;
 
                 for (address = addressStart; address < addressEnd; address++) {
                     renderLoresBlock(displayOffset,
-                            displayPalette[apple.mem[address + 0x10000] & 0xf],
-                            displayPalette[(apple.mem[address + 0x10000] & 0xf0) >> 4]);
+                            displayPalette[apple.physicalRead(address + 0x10000) & 0xf],
+                            displayPalette[(apple.physicalRead(address + 0x10000) & 0xf0) >> 4]);
                     displayOffset += DISPLAY_CHAR_SIZE_X;
                     renderLoresBlock(displayOffset,
-                            displayPalette[apple.mem[address] & 0xf],
-                            displayPalette[(apple.mem[address] & 0xf0) >> 4]);
+                            displayPalette[apple.physicalRead(address) & 0xf],
+                            displayPalette[(apple.physicalRead(address) & 0xf0) >> 4]);
                     displayOffset += DISPLAY_CHAR_SIZE_X;
                 }
                 displayOffset += (DISPLAY_CHAR_SIZE_Y - 1) * DISPLAY_SIZE_X;
@@ -919,14 +1368,25 @@ public class AppleDisplay implements Runnable {
     }
     }
 
+    private void renderDoubleLoresLine(int displayOffset, int addressStart, int scanLine) {
+        int shift = scanLine < 4 ? 0 : 4;
+        int addressEnd = addressStart + 40;
+        for (int address = addressStart; address < addressEnd; address++) {
+            renderLoresScanLine(displayOffset, displayPalette[(apple.physicalRead(address + 0x10000) >> shift) & 0xf]);
+            displayOffset += DISPLAY_CHAR_SIZE_X;
+            renderLoresScanLine(displayOffset, displayPalette[(apple.physicalRead(address) >> shift) & 0xf]);
+            displayOffset += DISPLAY_CHAR_SIZE_X;
+        }
+    }
+
     /**
      * Render hires canvas
      */
-    private void renderHiresWord(int destOffset, int hiresNibble) {
-        displayImageBuffer[destOffset + 0] = displayPalette[(hiresNibble >> 0) & 0xf];
-        displayImageBuffer[destOffset + 1] = displayPalette[(hiresNibble >> 4) & 0xf];
-        displayImageBuffer[destOffset + 2] = displayPalette[(hiresNibble >> 8) & 0xf];
-        displayImageBuffer[destOffset + 3] = displayPalette[(hiresNibble >> 12) & 0xf];
+    private void renderHiresWord(int destOffset, int hiresPixels) {
+        displayImageBuffer[destOffset + 0] = (byte) (hiresPixels >> 0);
+        displayImageBuffer[destOffset + 1] = (byte) (hiresPixels >> 8);
+        displayImageBuffer[destOffset + 2] = (byte) (hiresPixels >> 16);
+        displayImageBuffer[destOffset + 3] = (byte) (hiresPixels >> 24);
     }
 
     private void renderHiresScanLine(int destOffset, int hiresWord) {
@@ -989,14 +1449,14 @@ public class AppleDisplay implements Runnable {
     }
 
     private void calcNextHiresWords(int address) {
-        calcNextHiresWord(0, apple.mem[address + 0x00000], apple.mem[address + 0x00001]);
-        calcNextHiresWord(1, apple.mem[address + 0x00400], apple.mem[address + 0x00401]);
-        calcNextHiresWord(2, apple.mem[address + 0x00800], apple.mem[address + 0x00801]);
-        calcNextHiresWord(3, apple.mem[address + 0x00c00], apple.mem[address + 0x00c01]);
-        calcNextHiresWord(4, apple.mem[address + 0x01000], apple.mem[address + 0x01001]);
-        calcNextHiresWord(5, apple.mem[address + 0x01400], apple.mem[address + 0x01401]);
-        calcNextHiresWord(6, apple.mem[address + 0x01800], apple.mem[address + 0x01801]);
-        calcNextHiresWord(7, apple.mem[address + 0x01c00], apple.mem[address + 0x01c01]);
+        calcNextHiresWord(0, apple.physicalRead(address + 0x00000), apple.physicalRead(address + 0x00001));
+        calcNextHiresWord(1, apple.physicalRead(address + 0x00400), apple.physicalRead(address + 0x00401));
+        calcNextHiresWord(2, apple.physicalRead(address + 0x00800), apple.physicalRead(address + 0x00801));
+        calcNextHiresWord(3, apple.physicalRead(address + 0x00c00), apple.physicalRead(address + 0x00c01));
+        calcNextHiresWord(4, apple.physicalRead(address + 0x01000), apple.physicalRead(address + 0x01001));
+        calcNextHiresWord(5, apple.physicalRead(address + 0x01400), apple.physicalRead(address + 0x01401));
+        calcNextHiresWord(6, apple.physicalRead(address + 0x01800), apple.physicalRead(address + 0x01801));
+        calcNextHiresWord(7, apple.physicalRead(address + 0x01c00), apple.physicalRead(address + 0x01c01));
     }
 
     private void renderHires(int baseAddress, boolean isMixedMode) {
@@ -1008,7 +1468,8 @@ public class AppleDisplay implements Runnable {
         for (screenCharY = 0; screenCharY < screenCharYEnd; screenCharY++) {
             addressStart = baseAddress + textLineAddress[screenCharY];
 
-            if (graphicsDirty[addressStart >> 7]) {
+            if (isGraphicsDirty(addressStart)) {
+                renderedRows |= 1 << screenCharY;
                 addressEnd = addressStart + 40;
 
                 resetHiresWords();
@@ -1031,23 +1492,34 @@ public class AppleDisplay implements Runnable {
     }
 
     /**
-     * Render double hires canvas
+     * Render one scan line of hires, the first of the words is used
      */
-    private void renderDoubleHiresWord(int destOffset, int hiresNibble) {
-        displayImageBuffer[destOffset + 0] = doubleHiresPalette[(hiresNibble >> 0) & 0xf];
-        displayImageBuffer[destOffset + 1] = doubleHiresPalette[(hiresNibble >> 4) & 0xf];
-        displayImageBuffer[destOffset + 2] = doubleHiresPalette[(hiresNibble >> 8) & 0xf];
-        displayImageBuffer[destOffset + 3] = doubleHiresPalette[(hiresNibble >> 12) & 0xf];
+    private void renderHiresLine(int displayOffset, int addressStart) {
+        int addressEnd = addressStart + 40;
+
+        hiresWord[0] = 0;
+        calcNextHiresWord(0, apple.physicalRead(addressStart), apple.physicalRead(addressStart + 1));
+        for (int address = (addressStart + 2); address < addressEnd; address += 2) {
+            hiresWord[0] = hiresWordNext[0];
+            calcNextHiresWord(0, apple.physicalRead(address), apple.physicalRead(address + 1));
+            renderHiresScanLine(displayOffset, hiresWord[0]);
+            displayOffset += DISPLAY_CHAR_SIZE_X * 4;
+        }
+        hiresWord[0] = hiresWordNext[0];
+        renderHiresScanLine(displayOffset, hiresWord[0]);
     }
 
+    /**
+     * Render double hires canvas
+     */
     private void renderDoubleHiresScanLine(int destOffset, int hiresWord) {
-        renderDoubleHiresWord(destOffset + 0, hiresLookup[(hiresWord >> 0) & 0xff]);
-        renderDoubleHiresWord(destOffset + 4, hiresLookup[(hiresWord >> 4) & 0xff]);
-        renderDoubleHiresWord(destOffset + 8, hiresLookup[(hiresWord >> 8) & 0xff]);
-        renderDoubleHiresWord(destOffset + 12, hiresLookup[(hiresWord >> 12) & 0xff]);
-        renderDoubleHiresWord(destOffset + 16, hiresLookup[(hiresWord >> 16) & 0xff]);
-        renderDoubleHiresWord(destOffset + 20, hiresLookup[(hiresWord >> 20) & 0xff]);
-        renderDoubleHiresWord(destOffset + 24, hiresLookup[(hiresWord >> 24) & 0xff]);
+        renderHiresWord(destOffset + 0, doubleHiresLookup[(hiresWord >> 0) & 0xff]);
+        renderHiresWord(destOffset + 4, doubleHiresLookup[(hiresWord >> 4) & 0xff]);
+        renderHiresWord(destOffset + 8, doubleHiresLookup[(hiresWord >> 8) & 0xff]);
+        renderHiresWord(destOffset + 12, doubleHiresLookup[(hiresWord >> 12) & 0xff]);
+        renderHiresWord(destOffset + 16, doubleHiresLookup[(hiresWord >> 16) & 0xff]);
+        renderHiresWord(destOffset + 20, doubleHiresLookup[(hiresWord >> 20) & 0xff]);
+        renderHiresWord(destOffset + 24, doubleHiresLookup[(hiresWord >> 24) & 0xff]);
     }
 
     private void renderDoubleHiresBlock(int destOffset) {
@@ -1078,29 +1550,29 @@ public class AppleDisplay implements Runnable {
 
     private void calcNextDoubleHiresWords(int address) {
         calcNextDoubleHiresWord(0,
-                apple.mem[address + 0x10000], apple.mem[address + 0x00000],
-                apple.mem[address + 0x10001], apple.mem[address + 0x00001]);
+                apple.physicalRead(address + 0x10000), apple.physicalRead(address + 0x00000),
+                apple.physicalRead(address + 0x10001), apple.physicalRead(address + 0x00001));
         calcNextDoubleHiresWord(1,
-                apple.mem[address + 0x10400], apple.mem[address + 0x00400],
-                apple.mem[address + 0x10401], apple.mem[address + 0x00401]);
+                apple.physicalRead(address + 0x10400), apple.physicalRead(address + 0x00400),
+                apple.physicalRead(address + 0x10401), apple.physicalRead(address + 0x00401));
         calcNextDoubleHiresWord(2,
-                apple.mem[address + 0x10800], apple.mem[address + 0x00800],
-                apple.mem[address + 0x10801], apple.mem[address + 0x00801]);
+                apple.physicalRead(address + 0x10800), apple.physicalRead(address + 0x00800),
+                apple.physicalRead(address + 0x10801), apple.physicalRead(address + 0x00801));
         calcNextDoubleHiresWord(3,
-                apple.mem[address + 0x10c00], apple.mem[address + 0x00c00],
-                apple.mem[address + 0x10c01], apple.mem[address + 0x00c01]);
+                apple.physicalRead(address + 0x10c00), apple.physicalRead(address + 0x00c00),
+                apple.physicalRead(address + 0x10c01), apple.physicalRead(address + 0x00c01));
         calcNextDoubleHiresWord(4,
-                apple.mem[address + 0x11000], apple.mem[address + 0x01000],
-                apple.mem[address + 0x11001], apple.mem[address + 0x01001]);
+                apple.physicalRead(address + 0x11000), apple.physicalRead(address + 0x01000),
+                apple.physicalRead(address + 0x11001), apple.physicalRead(address + 0x01001));
         calcNextDoubleHiresWord(5,
-                apple.mem[address + 0x11400], apple.mem[address + 0x01400],
-                apple.mem[address + 0x11401], apple.mem[address + 0x01401]);
+                apple.physicalRead(address + 0x11400), apple.physicalRead(address + 0x01400),
+                apple.physicalRead(address + 0x11401), apple.physicalRead(address + 0x01401));
         calcNextDoubleHiresWord(6,
-                apple.mem[address + 0x11800], apple.mem[address + 0x01800],
-                apple.mem[address + 0x11801], apple.mem[address + 0x01801]);
+                apple.physicalRead(address + 0x11800), apple.physicalRead(address + 0x01800),
+                apple.physicalRead(address + 0x11801), apple.physicalRead(address + 0x01801));
         calcNextDoubleHiresWord(7,
-                apple.mem[address + 0x11c00], apple.mem[address + 0x01c00],
-                apple.mem[address + 0x11c01], apple.mem[address + 0x01c01]);
+                apple.physicalRead(address + 0x11c00), apple.physicalRead(address + 0x01c00),
+                apple.physicalRead(address + 0x11c01), apple.physicalRead(address + 0x01c01));
     }
 
     private void renderDoubleHires(int baseAddress, boolean isMixedMode) {
@@ -1112,7 +1584,8 @@ public class AppleDisplay implements Runnable {
         for (screenCharY = 0; screenCharY < screenCharYEnd; screenCharY++) {
             addressStart = baseAddress + textLineAddress[screenCharY];
 
-            if (graphicsDirty[addressStart >> 7]) {
+            if (isGraphicsDirty(addressStart)) {
+                renderedRows |= 1 << screenCharY;
                 addressEnd = addressStart + 40;
 
                 resetHiresWords();
@@ -1132,5 +1605,27 @@ public class AppleDisplay implements Runnable {
                 displayOffset += DISPLAY_CHAR_SIZE_Y * DISPLAY_SIZE_X;
         }
     }
-}
+    }
+
+    /**
+     * Render one scan line of double hires, the first of the words is used
+     */
+    private void renderDoubleHiresLine(int displayOffset, int addressStart) {
+        int addressEnd = addressStart + 40;
+
+        hiresWord[0] = 0;
+        calcNextDoubleHiresWord(0,
+                apple.physicalRead(addressStart + 0x10000), apple.physicalRead(addressStart),
+                apple.physicalRead(addressStart + 0x10001), apple.physicalRead(addressStart + 1));
+        for (int address = (addressStart + 2); address < addressEnd; address += 2) {
+            hiresWord[0] = hiresWordNext[0];
+            calcNextDoubleHiresWord(0,
+                    apple.physicalRead(address + 0x10000), apple.physicalRead(address),
+                    apple.physicalRead(address + 0x10001), apple.physicalRead(address + 1));
+            renderDoubleHiresScanLine(displayOffset, hiresWord[0]);
+            displayOffset += DISPLAY_CHAR_SIZE_X * 4;
+        }
+        hiresWord[0] = hiresWordNext[0];
+        renderDoubleHiresScanLine(displayOffset, hiresWord[0]);
+    }
 }
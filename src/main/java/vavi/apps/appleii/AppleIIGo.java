@@ -110,12 +110,23 @@ public class AppleIIGo {
     /** abstraction for view functionality */
     public interface View {
 
-        /** */
-        int[] createImageBuffer();
+        /**
+         * called for each buffer of a {@link FrameBuffer},
+         * pixels are indices into {@link AppleDisplay#getPalette()}
+         */
+        byte[] createImageBuffer();
 
         /** */
         void repaint();
 
+        /**
+         * Repaints a region of the display, e.g. the character rows rendered
+         *
+         * @param x in display pixels, {@link AppleDisplay#DISPLAY_SIZE_X} wide
+         * @param y in display pixels, {@link AppleDisplay#DISPLAY_SIZE_Y} high
+         */
+        void repaintDisplay(int x, int y, int w, int h);
+
         /** */
         void getCharSet(int[] buffer, int w, int h, int s);
 
@@ -182,27 +193,27 @@ public class AppleIIGo {
             if (keyboardUppercaseOnly && (key >= 97) && (key <= 122)) {
                 key -= 32;
             }
-            apple.setKeyLatch(key);
+            apple.postInput(InputEvent.key(key));
         }
     }
 
     public void setButton(int button, boolean flag) {
-        apple.paddle.setButton(button, flag);
+        apple.postInput(InputEvent.button(button, flag));
     }
 
     /** for key */
     public void setPaddle(int paddle, int value) {
-        apple.paddle.setPaddlePos(paddle, value);
+        apple.postInput(InputEvent.paddle(paddle, value));
     }
 
     /** for mouse */
     public void setPaddlePos(int x, int y) {
         if (isPaddleInverted) {
-            apple.paddle.setPaddlePos(0, (int) (display.getScale() * (255 - (float) (y * 256) / 192)));
-            apple.paddle.setPaddlePos(1, (int) (display.getScale() * (255 - (float) (x * 256) / 280)));
+            setPaddle(0, (int) (display.getScale() * (255 - (float) (y * 256) / 192)));
+            setPaddle(1, (int) (display.getScale() * (255 - (float) (x * 256) / 280)));
         } else {
-            apple.paddle.setPaddlePos(0, (int) (x * display.getScale() * 256 / 280));
-            apple.paddle.setPaddlePos(1, (int) (y * display.getScale() * 256 / 192));
+            setPaddle(0, (int) (x * display.getScale() * 256 / 280));
+            setPaddle(1, (int) (y * display.getScale() * 256 / 192));
         }
     }
 
@@ -223,8 +234,8 @@ public class AppleIIGo {
         apple.stepInstructions(step);
     }
 
-    public int[] getDisplayImageBuffer() {
-        return display.getDisplayImageBuffer();
+    public FrameBuffer<byte[]> getFrameBuffer() {
+        return display.getFrameBuffer();
     }
 
     public boolean isPaused() {
@@ -293,6 +304,8 @@ public class AppleIIGo {
         apple = new EmAppleII(view);
         loadRom(getParameter("cpuRom", ""));
         apple.setCpuSpeed(Integer.parseInt(getParameter("cpuSpeed", "1000")));
+        apple.setEngine(Integer.parseInt(getParameter("cpuEngine", "0")));
+        apple.setPacing(Pacing.valueOf(getParameter("cpuPacing", "realtime")));
         isCpuPaused = getParameter("cpuPaused", "false").equals("true");
         isCpuDebugEnabled = getParameter("cpuDebugEnabled", "false").equals("true");
         apple.setStepMode(getParameter("cpuStepMode", "false").equals("true"));
@@ -304,9 +317,11 @@ public class AppleIIGo {
         display = new AppleDisplay(apple);
         display.setScale(Float.parseFloat(getParameter("displayScale", "1")));
         display.setRefreshRate(Integer.parseInt(getParameter("displayRefreshRate", "10")));
+        display.setWarpFrameSkip(Integer.parseInt(getParameter("displayWarpFrameSkip", "15")));
         display.setColorMode(Integer.parseInt(getParameter("displayColorMode", "1")));
         display.setStatMode(getParameter("displayStatMode", "false").equals("true"));
         display.setGlare(getParameter("displayGlare", "false").equals("true"));
+        display.setScanlineRendering(getParameter("displayScanlineRendering", "false").equals("true"));
 
         // Speaker
         apple.speaker = new AppleSpeaker(apple);
@@ -315,9 +330,11 @@ public class AppleIIGo {
         // Peripherals
         disk = new DiskII(apple);
         apple.setPeripheral(disk, 6);
+        apple.setDiskLoader(this::loadDisk);
 
         // Initialize disk drives
         diskWritable = getParameter("diskWritable", "false").equals("true");
+        apple.setDiskAccelerated(getParameter("diskAccelerated", "true").equals("true"));
         mountDisk(0, getParameter("diskDrive1", ""));
         mountDisk(1, getParameter("diskDrive2", ""));
     }
@@ -365,7 +382,7 @@ public class AppleIIGo {
      */
     public void restart() {
         logger.log(Level.TRACE, "restart()");
-        apple.restart();
+        apple.postInput(InputEvent.reset(true));
     }
 
     /**
@@ -373,7 +390,7 @@ public class AppleIIGo {
      */
     public void reset() {
         logger.log(Level.TRACE, "reset()");
-        apple.reset();
+        apple.postInput(InputEvent.reset(false));
     }
 
     /**
@@ -385,31 +402,46 @@ public class AppleIIGo {
     }
 
     /**
-     * Mount a disk
+     * Mount a disk, it is loaded by the emulator thread.
+     * The resource is set when it has been loaded, a failure is reported to the view.
+     * A null or empty resource just unmounts the disk.
      */
-    public boolean mountDisk(int drive, String resource) {
+    public void mountDisk(int drive, String resource) {
         logger.log(Level.TRACE, "mountDisk(drive: " + drive + ", resource: " + resource + ")");
 
         if ((drive < 0) || (drive > 2)) {
-            return false;
+            view.debug("mount: drive: " + drive + ": no drive");
+            return;
         }
 
-        try {
-            unmountDisk(drive);
+        unmountDisk(drive);
 
-            diskDriveResource[drive] = resource;
+        diskDriveResource[drive] = null;
 
-            logger.log(Level.TRACE, "mount: dirve: " + drive + ", " + resource);
-            disk.readDisk(dao, drive, resource, false, 254);
+        if (resource == null || resource.isEmpty()) {
+            return;
+        }
+
+        apple.postInput(InputEvent.disk(drive, resource));
+    }
 
-            return true;
+    /**
+     * Disk input of the emulator
+     */
+    private void loadDisk(int drive, String resource) {
+        try {
+            logger.log(Level.TRACE, "mount: dirve: " + drive + ", " + resource);
+            if (disk.readDisk(dao, drive, resource, false, 254)) {
+                diskDriveResource[drive] = resource;
+            } else {
+                view.debug("mount: drive: " + drive + ": unsupported disk image, " + resource);
+            }
         } catch (Throwable e) {
             if (e instanceof IllegalStateException) {
-                logger.log(Level.WARNING, "mount: drive: " + drive + ": no disk, " + e.getMessage());
+                view.debug("mount: drive: " + drive + ": no disk, " + e.getMessage());
             } else {
-                logger.log(Level.ERROR, e.getMessage(), e);
+                view.debug(e);
             }
-            return false;
         }
     }
 
@@ -25,7 +25,7 @@ public class AppleSpeaker implements Runnable {
     public static final boolean SPEAKER_SIGNED = true;
     public static final boolean SPEAKER_BIGENDIAN = false;
 
-    private int clock, clockNextFlip, clockEnd;
+    private long clock, clockNextFlip, clockEnd;
     private boolean isFlipsBufferEmpty = true;
 
     private int bufferSize;
@@ -156,24 +156,45 @@ public class AppleSpeaker implements Runnable {
         }
     }
 
+    /**
+     * Drops sound not played yet, e.g. while running faster than real time
+     */
+    public void resync() {
+        clock = apple.clock;
+        speakerFlipsPointer = apple.speakerFlipsPointer;
+        isFlipsBufferEmpty = true;
+    }
+
+    /**
+     * Speaker cone position for a snapshot
+     */
+    int getFlipState() {
+        return speakerFlipState;
+    }
+
+    /**
+     * Restores the speaker cone position, sound not played yet is dropped
+     */
+    void setFlipState(int value) {
+        speakerFlipState = value & 1;
+        resync();
+    }
+
     /**
      * Fill buffer
      */
     private int fillBuffer() {
         int value = speakerFlipStateToVolume[speakerFlipState];
-        int clockEndSample = clockEnd - speakerClocksPerSample;
+        long clockEndSample = clockEnd - speakerClocksPerSample;
         int bufferPointer = 0;
 
         initNextFlip();
         while (bufferPointer < bufferSize) {
-            if (clockEndSample == clock)
-                break;
-
-            if (((clockEndSample - clock) & 0x7fff_ffff) > 0x3fff_ffff)
+            if (clock >= clockEndSample)
                 break;
 
             // Find all flips on current sample
-            while (((clockNextFlip - clock) & 0x7fff_ffff) < speakerClocksPerSample) {
+            while (clockNextFlip < clock + speakerClocksPerSample) {
                 getNextFlip();
                 speakerFlipState = (speakerFlipState ^ 1);
                 value = speakerFlipStateToVolume[speakerFlipState];
@@ -205,7 +226,7 @@ public class AppleSpeaker implements Runnable {
      */
     private void getNextFlip() {
         if (speakerFlipsPointer == apple.speakerFlipsPointer) {
-            clockNextFlip = clock + 0x3fff_ffff;
+            clockNextFlip = Long.MAX_VALUE;
             isFlipsBufferEmpty = true;
         } else {
             clockNextFlip = apple.speakerFlips[speakerFlipsPointer];
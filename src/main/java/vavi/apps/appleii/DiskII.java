@@ -10,6 +10,7 @@
 package vavi.apps.appleii;
 
 import java.lang.System.Logger;
+import java.nio.ByteBuffer;
 
 import static java.lang.System.getLogger;
 
@@ -57,6 +58,10 @@ public class DiskII extends Peripheral {
 
     private final boolean[] isWriteProtected = new boolean[NUM_DRIVES];
     private final byte[][][] diskData = new byte[NUM_DRIVES][DOS_NUM_TRACKS][];
+    /** tracks written since the disk was loaded */
+    private final boolean[][] isTrackModified = new boolean[NUM_DRIVES][DOS_NUM_TRACKS];
+    /** tracks shared with a forked machine, copied before being written */
+    private final boolean[][] isTrackShared = new boolean[NUM_DRIVES][DOS_NUM_TRACKS];
 
     private int currPhysTrack;
     private int currNibble;
@@ -126,6 +131,42 @@ public class DiskII extends Peripheral {
         readDisk(null, 1, "", false, DEFAULT_VOLUME);
     }
 
+    /**
+     * Fork constructor, tracks are shared until either side writes them
+     */
+    private DiskII(EmAppleII apple, DiskII parent) {
+        this.apple = apple;
+
+        drive = parent.drive;
+        phases = parent.phases;
+        isMotorOn = parent.isMotorOn;
+        currPhysTrack = parent.currPhysTrack;
+        currNibble = parent.currNibble;
+        System.arraycopy(parent.driveCurrPhysTrack, 0, driveCurrPhysTrack, 0, NUM_DRIVES);
+        latchData = parent.latchData;
+        writeMode = parent.writeMode;
+        loadMode = parent.loadMode;
+        driveSpin = parent.driveSpin;
+        for (int drive = 0; drive < NUM_DRIVES; drive++) {
+            isWriteProtected[drive] = parent.isWriteProtected[drive];
+            for (int track = 0; track < DOS_NUM_TRACKS; track++) {
+                diskData[drive][track] = parent.diskData[drive][track];
+                isTrackModified[drive][track] = parent.isTrackModified[drive][track];
+                isTrackShared[drive][track] = true;
+                parent.isTrackShared[drive][track] = true;
+            }
+        }
+        realTrack = diskData[drive][currPhysTrack >> 1];
+    }
+
+    /**
+     * The emulator must be paused or this must be called from its thread.
+     */
+    @Override
+    public Peripheral fork(EmAppleII apple) {
+        return new DiskII(apple, this);
+    }
+
     /**
      * I/O read
      *
@@ -296,6 +337,8 @@ public class DiskII extends Peripheral {
 
         for (int trackNum = 0; trackNum < DOS_NUM_TRACKS; trackNum++) {
             diskData[drive][trackNum] = new byte[RAW_TRACK_BYTES];
+            isTrackModified[drive][trackNum] = false;
+            isTrackShared[drive][trackNum] = false;
 
             if (dao != null) {
                 if (nib) {
@@ -323,6 +366,80 @@ public class DiskII extends Peripheral {
         return true;
     }
 
+    /**
+     * Is a track written since the disk was loaded
+     */
+    public boolean isTrackModified(int drive, int track) {
+        return isTrackModified[drive][track];
+    }
+
+    @Override
+    public int getStateSize() {
+        return 11 * 4;
+    }
+
+    /**
+     * Writes the head and latch
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(drive).putInt(phases).putInt(isMotorOn ? 1 : 0);
+        buffer.putInt(currPhysTrack).putInt(currNibble);
+        buffer.putInt(driveCurrPhysTrack[0]).putInt(driveCurrPhysTrack[1]);
+        buffer.putInt(latchData).putInt(writeMode ? 1 : 0).putInt(loadMode ? 1 : 0).putInt(driveSpin);
+    }
+
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        drive = buffer.getInt();
+        phases = buffer.getInt();
+        isMotorOn = buffer.getInt() != 0;
+        currPhysTrack = buffer.getInt();
+        currNibble = buffer.getInt();
+        driveCurrPhysTrack[0] = buffer.getInt();
+        driveCurrPhysTrack[1] = buffer.getInt();
+        latchData = buffer.getInt();
+        writeMode = buffer.getInt() != 0;
+        loadMode = buffer.getInt() != 0;
+        driveSpin = buffer.getInt();
+        realTrack = diskData[drive][currPhysTrack >> 1];
+    }
+
+    @Override
+    public int getMediaSize() {
+        return NUM_DRIVES * (1 + DOS_NUM_TRACKS * (1 + RAW_TRACK_BYTES));
+    }
+
+    /**
+     * Writes all tracks, so a snapshot does not depend on the disk image file
+     */
+    @Override
+    public void saveMedia(ByteBuffer buffer) {
+        for (int drive = 0; drive < NUM_DRIVES; drive++) {
+            buffer.put((byte) (isWriteProtected[drive] ? 1 : 0));
+            for (int track = 0; track < DOS_NUM_TRACKS; track++) {
+                buffer.put((byte) (isTrackModified[drive][track] ? 1 : 0));
+                buffer.put(diskData[drive][track]);
+            }
+        }
+    }
+
+    @Override
+    public void loadMedia(ByteBuffer buffer) {
+        for (int drive = 0; drive < NUM_DRIVES; drive++) {
+            isWriteProtected[drive] = buffer.get() != 0;
+            for (int track = 0; track < DOS_NUM_TRACKS; track++) {
+                isTrackModified[drive][track] = buffer.get() != 0;
+                if (isTrackShared[drive][track]) {
+                    diskData[drive][track] = new byte[RAW_TRACK_BYTES];
+                    isTrackShared[drive][track] = false;
+                }
+                buffer.get(diskData[drive][track]);
+            }
+        }
+        realTrack = diskData[drive][currPhysTrack >> 1];
+    }
+
     /**
      * Motor on indicator
      */
@@ -378,7 +495,13 @@ public class DiskII extends Peripheral {
             }
         } else {
             // Write data: C0xD, C0xC
+            int track = currPhysTrack >> 1;
+            if (isTrackShared[drive][track]) {
+                realTrack = diskData[drive][track] = realTrack.clone();
+                isTrackShared[drive][track] = false;
+            }
             realTrack[currNibble] = (byte) latchData;
+            isTrackModified[drive][track] = true;
         }
 
         /*
@@ -10,11 +10,15 @@
 
 package vavi.apps.appleii;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 
 public class Em6502 {
 
     /**
-     * Base memory (including zero page and stack)
+     * Base memory (including zero page and stack),
+     * a subclass may keep the rest elsewhere, see {@link #physicalRead(int)}
      */
     public byte[] mem = null;
 
@@ -27,6 +31,29 @@ public class Em6502 {
 
     protected void memoryWrite(int addr, int value) {
         mem[addr] = (byte) value;
+        invalidateCode(addr);
+    }
+
+    /**
+     * Physical address ({@link #physicalRead(int)}) an address is fetched from,
+     * or -1 if it is not plain memory (e.g. I/O).
+     */
+    protected int physicalAddress(int addr) {
+        return addr;
+    }
+
+    /**
+     * Byte at a physical address, e.g. to decode an instruction
+     */
+    protected byte physicalRead(int physical) {
+        return mem[physical];
+    }
+
+    /**
+     * Bytes of physical memory
+     */
+    protected int physicalSize() {
+        return mem.length;
     }
 
     /*
@@ -40,6 +67,120 @@ public class Em6502 {
         mem[addr] = (byte) value;
     }
 
+    /*
+     * Execution engines
+     */
+    public static final int ENGINE_INTERPRETER = 0;
+    /** runs basic blocks decoded ahead and cached by physical address */
+    public static final int ENGINE_TRANSLATOR = 1;
+    /** runs single instructions decoded ahead and cached by physical address */
+    public static final int ENGINE_PREDECODED = 2;
+
+    private int engine = ENGINE_INTERPRETER;
+
+    /**
+     * Translated code
+     * <p>
+     * Blocks are keyed by physical address, so each memory bank has its own.
+     * A block never crosses a page, so dropping the pages written to is enough.
+     */
+    private static final class Block {
+        final int[] code; // opcode | operand << 8
+
+        Block(int[] code) {
+            this.code = code;
+        }
+    }
+
+    private static final Block NO_BLOCK = new Block(new int[0]);
+    private static final int BLOCK_MAX_INSTRUCTIONS = 64;
+
+    private Block[][] blockPages;
+    /** bytes covered by translated code */
+    private long[] codeBits;
+    /** changes when translated code or the memory map may have become stale */
+    private int codeVersion;
+
+    /**
+     * Decoded instructions, one per physical address
+     * <p>
+     * DECODED_VALID | operand << 8 | opcode, 0 if not decoded yet.
+     */
+    private int[] decoded;
+    private static final int DECODED_VALID = 0x1000000;
+
+    /**
+     * Set execution engine
+     */
+    public void setEngine(int value) {
+        engine = value;
+        flushCode();
+    }
+
+    /**
+     * Get execution engine
+     */
+    public int getEngine() {
+        return engine;
+    }
+
+    /**
+     * Drops translated code at the physical address written to
+     */
+    protected final void invalidateCode(int physical) {
+        int[] decoded = this.decoded;
+        if (decoded != null) {
+            // instructions whose operand may cover the address
+            decoded[physical] = 0;
+            if (physical >= 2) {
+                decoded[physical - 1] = 0;
+                decoded[physical - 2] = 0;
+            }
+        }
+
+        long[] bits = codeBits;
+        if (bits != null && (bits[physical >> 6] & (1L << physical)) != 0) {
+            int page = physical >> 8;
+            blockPages[page] = null;
+            bits[page << 2] = bits[(page << 2) + 1] = bits[(page << 2) + 2] = bits[(page << 2) + 3] = 0;
+            codeVersion++;
+        }
+    }
+
+    /**
+     * Drops all translated code, e.g. after memory was loaded directly
+     */
+    protected final void flushCode() {
+        blockPages = null;
+        codeBits = null;
+        decoded = null;
+        codeVersion++;
+    }
+
+    /**
+     * Decodes every address of a region which is never written, e.g. ROM.
+     * Does nothing unless the engine is {@link #ENGINE_PREDECODED}.
+     */
+    protected final void predecode(int from, int to) {
+        if (engine != ENGINE_PREDECODED) {
+            return;
+        }
+
+        if (decoded == null) {
+            decoded = new int[physicalSize()];
+        }
+        for (int physical = from; physical < to; physical++) {
+            decoded[physical] = decode(physical);
+        }
+    }
+
+    /**
+     * Tells translated code the memory map has been switched
+     */
+    protected final void memoryMapChanged() {
+        codeVersion++;
+    }
+
     /*
      * Userspace interrupts
      */
@@ -73,9 +214,31 @@ public class Em6502 {
     public int A, X, Y, P, S, PC;
 
     /**
-     * CPU Clock
+     * CPU Clock, never wraps
+     */
+    protected long clock;
+
+    /**
+     * Get CPU clock
+     */
+    public final long getClock() {
+        return clock;
+    }
+
+    /**
+     * Get lower 32 bits of CPU clock, for callers comparing clocks by difference
      */
-    protected int clock;
+    public final int getClockInt() {
+        return (int) clock;
+    }
+
+    /**
+     * Events due at a CPU clock, e.g. for peripherals
+     */
+    public final Scheduler scheduler = new Scheduler();
+
+    /** longest instruction, ignoring interrupts */
+    private static final int MAX_INSTRUCTION_CYCLES = 7;
 
     /*
      * CPU Flags
@@ -111,6 +274,7 @@ public class Em6502 {
     /**
      * Emulator registers
      */
+    private int fetched;
     private int easp1, easp2;
     private int operandAddress;
     private int opcode;
@@ -118,22 +282,54 @@ public class Em6502 {
     private int result;
     private int NZFlags;
 
-    /**
-     * ALU look up tables
-     */
-    private final int[] BCDTableAdd;    // addition correction
-    private final int[] BCDTableSub;    // subtraction correction
+    /** Instruction length in bytes, indexed by opcode */
+    static final int[] OPCODE_SIZE = {
+            1, 2, 1, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // 00
+            2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1,  // 10
+            3, 2, 1, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // 20
+            2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1,  // 30
+            1, 2, 1, 1, 1, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // 40
+            2, 2, 2, 1, 1, 2, 2, 1, 1, 3, 1, 1, 1, 3, 3, 1,  // 50
+            1, 2, 1, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // 60
+            2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1,  // 70
+            2, 2, 1, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // 80
+            2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1,  // 90
+            2, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // A0
+            2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1,  // B0
+            2, 2, 1, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // C0
+            2, 2, 2, 1, 1, 2, 2, 1, 1, 3, 1, 1, 1, 3, 3, 1,  // D0
+            2, 2, 1, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1,  // E0
+            2, 2, 2, 1, 1, 2, 2, 1, 1, 3, 1, 1, 1, 3, 3, 1,  // F0
+    };
+
+    /** Base cycle count, indexed by opcode (branches taken add one) */
+    static final int[] OPCODE_CYCLES = {
+            7, 6, 2, 2, 5, 3, 5, 2, 3, 2, 2, 2, 5, 4, 6, 2,  // 00
+            2, 5, 5, 2, 5, 4, 6, 2, 2, 4, 2, 2, 5, 4, 7, 2,  // 10
+            6, 6, 2, 2, 3, 3, 5, 2, 4, 2, 2, 2, 4, 4, 6, 2,  // 20
+            2, 5, 5, 2, 3, 4, 6, 2, 2, 4, 2, 2, 4, 4, 7, 2,  // 30
+            6, 6, 2, 2, 2, 3, 5, 2, 3, 2, 2, 2, 3, 4, 6, 2,  // 40
+            2, 5, 5, 2, 2, 4, 6, 2, 2, 4, 3, 2, 2, 4, 7, 2,  // 50
+            6, 6, 2, 2, 3, 3, 5, 2, 4, 2, 2, 2, 5, 4, 6, 2,  // 60
+            2, 5, 5, 2, 3, 4, 6, 2, 2, 4, 4, 2, 6, 4, 7, 2,  // 70
+            2, 6, 2, 2, 3, 3, 3, 2, 2, 2, 2, 2, 4, 4, 4, 2,  // 80
+            2, 6, 6, 2, 4, 4, 4, 2, 2, 5, 2, 2, 4, 5, 4, 2,  // 90
+            2, 6, 2, 2, 3, 3, 3, 2, 2, 2, 2, 2, 4, 4, 4, 2,  // A0
+            2, 5, 5, 2, 4, 4, 4, 2, 2, 4, 2, 2, 4, 4, 4, 2,  // B0
+            2, 6, 2, 2, 3, 3, 5, 2, 2, 2, 2, 2, 4, 4, 6, 2,  // C0
+            2, 5, 5, 2, 2, 4, 6, 2, 2, 4, 3, 2, 2, 4, 7, 2,  // D0
+            2, 6, 2, 2, 3, 3, 5, 2, 2, 2, 2, 2, 4, 4, 6, 2,  // E0
+            2, 5, 5, 2, 2, 4, 6, 2, 2, 4, 4, 2, 2, 4, 7, 2,  // F0
+    };
 
     /**
-     * Constructor
+     * ALU look up tables, shared by all instances
      */
-    public Em6502() {
-//		createRunFile(); // TODO: for debugging - disable
+    private static final int[] BCDTableAdd = new int[512];    // addition correction
+    private static final int[] BCDTableSub = new int[512];    // subtraction correction
 
+    static {
         // Init BCD tables
-        BCDTableAdd = new int[512];
-        BCDTableSub = new int[512];
-
         for (int i = 0; i < 512; i++) {
             BCDTableAdd[i] = ((i & 0x0f) <= 0x09) ? i : (i + 0x06);
             BCDTableAdd[i] += ((BCDTableAdd[i] & 0xf0) <= 0x90) ? 0 : 0x60;
@@ -144,6 +340,13 @@ public class Em6502 {
             BCDTableSub[i] = ((i & 0x0f) <= 0x09) ? i : (i - 0x06);
             BCDTableSub[i] -= ((BCDTableSub[i] & 0xf0) <= 0x90) ? 0 : 0x60;
         }
+    }
+
+    /**
+     * Constructor
+     */
+    public Em6502() {
+//		createRunFile(); // TODO: for debugging - disable
 
         // Init CPU
         S = 0xFF;
@@ -286,44 +489,38 @@ public class Em6502 {
     /*
      * Macros for effective address calculation
      * (Macros whose names end with NC do not check for page crossing)
+     * The operand bytes have already been fetched into fetched and PC points
+     * to the next instruction.
      */
     private int eaimm() {
-        easp1 = memoryRead(PC);
-        PC++;
+        easp1 = fetched & 0xff;
         return easp1;
     }
 
     private int eazp() {
-        easp1 = memoryRead(PC);
-        PC++;
+        easp1 = fetched & 0xff;
         return easp1;
     }
 
     private int eazpx() {
-        easp1 = (memoryRead(PC) + X) & 0xff;
-        PC++;
+        easp1 = (fetched + X) & 0xff;
         return easp1;
     }
 
     private int eazpy() {
-        easp1 = (memoryRead(PC) + Y) & 0xff;
-        PC++;
+        easp1 = (fetched + Y) & 0xff;
         return easp1;
     }
 
     private int eaabs() {
-        easp1 = memoryRead(PC);
-        PC++;
-        easp1 += (memoryRead(PC) << 8);
-        PC++;
+        easp1 = fetched;
         return easp1;
     }
 
     private int earel() {
-//		easp1 = memoryRead(PC); PC++;
+//		easp1 = fetched & 0xff;
 //		return ((easp1 & 0x80) != 0) ? easp1 - 256 : easp1;
-        easp1 = (byte) memoryRead(PC);
-        PC++;
+        easp1 = (byte) fetched;
         return easp1;
     }
 
@@ -447,8 +644,23 @@ public class Em6502 {
     private void executeInstruction() {
         opcode = memoryRead(PC);
 //		writeRunFile(opcode); // TODO: for debugging = disable
-        PC++;
+        switch (OPCODE_SIZE[opcode]) {
+            case 2:
+                fetched = memoryRead(PC + 1);
+                break;
+            case 3:
+                fetched = memoryRead(PC + 1);
+                fetched |= memoryRead(PC + 2) << 8;
+                break;
+        }
+        PC += OPCODE_SIZE[opcode];
 
+        execute();
+        clock += OPCODE_CYCLES[opcode];
+    }
+
+    /** Executes {@link #opcode}, operand bytes are in {@link #fetched}. */
+    private void execute() {
         switch (opcode) {
             case 0x69:    // ADC #imm
                 operand = eaimm();
@@ -457,7 +669,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x6D:    // ADC abs
@@ -467,7 +678,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x65:    // ADC zp
@@ -477,7 +687,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 3;
                 break;
 
             case 0x61:    // ADC (zp,X)
@@ -487,7 +696,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 6;
                 break;
 
             case 0x71:    // ADC (zp),Y
@@ -498,7 +706,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x75:    // ADC zp,X
@@ -509,7 +716,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x7D:    // ADC abs,X
@@ -519,7 +725,6 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x79:    // ADC abs,Y
@@ -529,55 +734,46 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x29:    // AND #imm
                 A &= eaimm();
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x2D:    // AND abs
                 A &= memoryRead(eaabs());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x25:    // AND zp
                 A &= zeroPageRead(eazp());
                 NZFlags = A;
-                clock += 3;
                 break;
 
             case 0x21:    // AND (zp,X)
                 A &= memoryRead(eazpxind());
                 NZFlags = A;
-                clock += 6;
                 break;
 
             case 0x31:    // AND (zp),Y
                 A &= memoryRead(eazpindy());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x35:    // AND zp,X
                 A &= zeroPageRead(eazpx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x3D:    // AND abs,X
                 A &= memoryRead(eaabsx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x39:    // AND abs,Y
                 A &= memoryRead(eaabsy());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x0E:    // ASL abs
@@ -586,7 +782,6 @@ public class Em6502 {
                 result = operand << 1;
                 NZFlags = result;
                 memoryWrite(operandAddress, result);
-                clock += 6;
                 break;
 
             case 0x06:    // ASL zp
@@ -595,14 +790,12 @@ public class Em6502 {
                 result = operand << 1;
                 NZFlags = result;
                 zeroPageWrite(operandAddress, result);
-                clock += 5;
                 break;
 
             case 0x0A:    // ASL acc
                 result = A << 1;
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x16:    // ASL zp,X
@@ -611,7 +804,6 @@ public class Em6502 {
                 result = operand << 1;
                 NZFlags = result;
                 zeroPageWrite(operandAddress, result);
-                clock += 6;
                 break;
 
             case 0x1E:    // ASL abs,X
@@ -620,26 +812,22 @@ public class Em6502 {
                 result = operand << 1;
                 NZFlags = result;
                 memoryWrite(operandAddress, result);
-                clock += 7;
                 break;
 
             case 0x90:    // BCC rr
                 operand = earel();
-                clock += 2;
                 if (getFNotC())
                     branch(operand);
                 break;
 
             case 0xB0:    // BCS rr
                 operand = earel();
-                clock += 2;
                 if (getFC())
                     branch(operand);
                 break;
 
             case 0xF0:    // BEQ rr
                 operand = earel();
-                clock += 2;
                 if (getFZ())
                     branch(operand);
                 break;
@@ -648,19 +836,16 @@ public class Em6502 {
                 operand = memoryRead(eaabs());
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
-                clock += 4;
                 break;
 
             case 0x24:    // BIT zp
                 operand = zeroPageRead(eazp());
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
-                clock += 3;
                 break;
 
             case 0x30:    // BMI rr
                 operand = earel();
-                clock += 2;
                 if (getFN()) {
                     branch(operand);
                 }
@@ -668,7 +853,6 @@ public class Em6502 {
 
             case 0xD0:    // BNE rr
                 operand = earel();
-                clock += 2;
                 if (getFNotZ()) {
                     branch(operand);
                 }
@@ -676,7 +860,6 @@ public class Em6502 {
 
             case 0x10:    // BPL rr
                 operand = earel();
-                clock += 2;
                 if (getFNotN()) {
                     branch(operand);
                 }
@@ -693,12 +876,10 @@ public class Em6502 {
                 setI(true);
                 PC = memoryRead(0xfffe);
                 PC |= memoryRead(0xffff) << 8;
-                clock += 7;
                 break;
 
             case 0x50:    // BVC rr
                 operand = earel();
-                clock += 2;
                 if (!getV()) {
                     branch(operand);
                 }
@@ -706,7 +887,6 @@ public class Em6502 {
 
             case 0x70:    // BVS rr
                 operand = earel();
-                clock += 2;
                 if (getV()) {
                     branch(operand);
                 }
@@ -714,17 +894,14 @@ public class Em6502 {
 
             case 0x18:    // CLC rr
                 setFC(false);
-                clock += 2;
                 break;
 
             case 0xD8:    // CLD
                 setD(false);
-                clock += 2;
                 break;
 
             case 0x58:    // CLI
                 setI(false);
-                clock += 2;
                 if (pendingIRQ > 0) {
                     pendingIRQ--;
                     assertIRQ();
@@ -733,91 +910,76 @@ public class Em6502 {
 
             case 0xB8:    // CLV
                 setV(false);
-                clock += 2;
                 break;
 
             case 0xC9:    // CMP #imm
                 result = 0x100 + A - eaimm();
                 NZFlags = result;
-                clock += 2;
                 break;
 
             case 0xCD:    // CMP abs
                 result = 0x100 + A - memoryRead(eaabs());
                 NZFlags = result;
-                clock += 4;
                 break;
 
             case 0xC5:    // CMP zp
                 result = 0x100 + A - zeroPageRead(eazp());
                 NZFlags = result;
-                clock += 3;
                 break;
 
             case 0xC1:    // CMP (zp,X)
                 result = 0x100 + A - memoryRead(eazpxind());
                 NZFlags = result;
-                clock += 6;
                 break;
 
             case 0xD1:    // CMP (zp),Y
                 result = 0x100 + A - memoryRead(eazpindy());
                 NZFlags = result;
-                clock += 5;
                 break;
 
             case 0xD5:    // CMP zp,X
                 result = 0x100 + A - zeroPageRead(eazpx());
                 NZFlags = result;
-                clock += 4;
                 break;
 
             case 0xDD:    // CMP abs,X
                 result = 0x100 + A - memoryRead(eaabsx());
                 NZFlags = result;
-                clock += 4;
                 break;
 
             case 0xD9:    // CMP abs,Y
                 result = 0x100 + A - memoryRead(eaabsy());
                 NZFlags = result;
-                clock += 4;
                 break;
 
             case 0xE0:    // CPX #imm
                 result = 0x100 + X - eaimm();
                 NZFlags = result;
-                clock += 2;
                 break;
 
             case 0xEC:    // CPX abs
                 result = 0x100 + X - memoryRead(eaabs());
                 NZFlags = result;
-                clock += 4;
                 break;
 
             case 0xE4:    // CPX zp
                 result = 0x100 + X - zeroPageRead(eazp());
                 NZFlags = result;
-                clock += 3;
                 break;
 
             case 0xC0:    // CPY #imm
                 result = 0x100 + Y - eaimm();
                 NZFlags = result;
-                clock += 2;
                 break;
 
             case 0xCC:    // CPY abs
                 result = 0x100 + Y - memoryRead(eaabs());
                 NZFlags = result;
-                clock += 4;
                 break;
 
             case 0xC4:    // CPY zp
                 result = 0x100 + Y - zeroPageRead(eazp());
                 NZFlags = result;
-                clock += 3;
                 break;
 
             case 0xCE:    // DEC abs
@@ -825,7 +987,6 @@ public class Em6502 {
                 operand = memoryRead(operandAddress);
                 NZFlags = operand + 0xff;
                 memoryWrite(operandAddress, NZFlags);
-                clock += 6;
                 break;
 
             case 0xC6:    // DEC zp
@@ -833,7 +994,6 @@ public class Em6502 {
                 operand = zeroPageRead(operandAddress);
                 NZFlags = operand + 0xff;
                 zeroPageWrite(operandAddress, NZFlags);
-                clock += 5;
                 break;
 
             case 0xD6:    // DEC zp,X
@@ -841,7 +1001,6 @@ public class Em6502 {
                 operand = zeroPageRead(operandAddress);
                 NZFlags = operand + 0xff;
                 zeroPageWrite(operandAddress, NZFlags);
-                clock += 6;
                 break;
 
             case 0xDE:    // DEC abs,X
@@ -849,67 +1008,56 @@ public class Em6502 {
                 operand = memoryRead(operandAddress);
                 NZFlags = operand + 0xff;
                 memoryWrite(operandAddress, NZFlags);
-                clock += 7;
                 break;
 
             case 0xCA:    // DEX
                 NZFlags = X + 0xff;
                 X = NZFlags & 0xff;
-                clock += 2;
                 break;
 
             case 0x88:    // DEY
                 NZFlags = Y + 0xff;
                 Y = NZFlags & 0xff;
-                clock += 2;
                 break;
 
             case 0x49:    // EOR #imm
                 A ^= eaimm();
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x4D:    // EOR abs
                 A ^= memoryRead(eaabs());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x45:    // EOR zp
                 A ^= zeroPageRead(eazp());
                 NZFlags = A;
-                clock += 3;
                 break;
 
             case 0x41:    // EOR (zp,X)
                 A ^= memoryRead(eazpxind());
                 NZFlags = A;
-                clock += 6;
                 break;
 
             case 0x51:    // EOR (zp),Y
                 A ^= memoryRead(eazpindy());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x55:    // EOR zp,X
                 A ^= zeroPageRead(eazpx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x5D:    // EOR abs,X
                 A ^= memoryRead(eaabsx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x59:    // EOR abs,Y
                 A ^= memoryRead(eaabsy());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xEE:    // INC abs
@@ -917,7 +1065,6 @@ public class Em6502 {
                 operand = memoryRead(operandAddress);
                 NZFlags = operand + 1;
                 memoryWrite(operandAddress, NZFlags);
-                clock += 6;
                 break;
 
             case 0xE6:    // INC zp
@@ -925,7 +1072,6 @@ public class Em6502 {
                 operand = zeroPageRead(operandAddress);
                 NZFlags = operand + 1;
                 zeroPageWrite(operandAddress, NZFlags);
-                clock += 5;
                 break;
 
             case 0xF6:    // INC zp,X
@@ -933,7 +1079,6 @@ public class Em6502 {
                 operand = zeroPageRead(operandAddress);
                 NZFlags = operand + 1;
                 zeroPageWrite(operandAddress, NZFlags);
-                clock += 6;
                 break;
 
             case 0xFE:    // INC abs,X
@@ -941,29 +1086,24 @@ public class Em6502 {
                 operand = memoryRead(operandAddress);
                 NZFlags = operand + 1;
                 memoryWrite(operandAddress, NZFlags);
-                clock += 7;
                 break;
 
             case 0xE8:    // INX
                 NZFlags = X + 1;
                 X = NZFlags & 0xff;
-                clock += 2;
                 break;
 
             case 0xC8:    // INY
                 NZFlags = Y + 1;
                 Y = NZFlags & 0xff;
-                clock += 2;
                 break;
 
             case 0x4C:    // JMP abs
                 PC = eaabs();
-                clock += 3;
                 break;
 
             case 0x6C:    // JMP (abs)
                 PC = eaabsind();
-                clock += 5;
                 break;
 
             case 0x20:    // JSR abs
@@ -972,115 +1112,96 @@ public class Em6502 {
                 push(PC >> 8);
                 push(PC);
                 PC = operandAddress;
-                clock += 6;
                 break;
 
             case 0xA9:    // LDA #imm
                 A = eaimm();
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0xAD:    // LDA abs
                 A = memoryRead(eaabs());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xA5:    // LDA zp
                 A = zeroPageRead(eazp());
                 NZFlags = A;
-                clock += 3;
                 break;
 
             case 0xA1:    // LDA (zp,X)
                 A = memoryRead(eazpxind());
                 NZFlags = A;
-                clock += 6;
                 break;
 
             case 0xB1:    // LDA (zp),Y
                 A = memoryRead(eazpindy());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0xB5:    // LDA zp,X
                 A = zeroPageRead(eazpx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xBD:    // LDA abs,X
                 A = memoryRead(eaabsx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xB9:    // LDA abs,Y
                 A = memoryRead(eaabsy());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xA2:    // LDX #imm
                 X = eaimm();
                 NZFlags = X;
-                clock += 2;
                 break;
 
             case 0xAE:    // LDX abs
                 X = memoryRead(eaabs());
                 NZFlags = X;
-                clock += 4;
                 break;
 
             case 0xA6:    // LDX zp
                 X = zeroPageRead(eazp());
                 NZFlags = X;
-                clock += 3;
                 break;
 
             case 0xBE:    // LDX abs,Y
                 X = memoryRead(eaabsy());
                 NZFlags = X;
-                clock += 4;
                 break;
 
             case 0xB6:    // LDX zp,Y
                 X = zeroPageRead(eazpy());
                 NZFlags = X;
-                clock += 4;
                 break;
 
             case 0xA0:    // LDY #imm
                 Y = eaimm();
                 NZFlags = Y;
-                clock += 2;
                 break;
 
             case 0xAC:    // LDY abs
                 Y = memoryRead(eaabs());
                 NZFlags = Y;
-                clock += 4;
                 break;
 
             case 0xA4:    // LDY zp
                 Y = zeroPageRead(eazp());
                 NZFlags = Y;
-                clock += 3;
                 break;
 
             case 0xB4:    // LDY zp,X
                 Y = zeroPageRead(eazpx());
                 NZFlags = Y;
-                clock += 4;
                 break;
 
             case 0xBC:    // LDY abs,X
                 Y = memoryRead(eaabsx());
                 NZFlags = Y;
-                clock += 4;
                 break;
 
             case 0x4E:    // LSR abs
@@ -1089,7 +1210,6 @@ public class Em6502 {
                 result = (operand & 0x01) << 8;    // just get the C bit
                 NZFlags = operand >> 1;        // result in NZFlags
                 memoryWrite(operandAddress, NZFlags);
-                clock += 6;
                 break;
 
             case 0x46:    // LSR zp
@@ -1098,14 +1218,12 @@ public class Em6502 {
                 result = (operand & 0x01) << 8;    // just get the C bit
                 NZFlags = operand >> 1;        // result in NZFlags
                 zeroPageWrite(operandAddress, NZFlags);
-                clock += 5;
                 break;
 
             case 0x4A:    // LSR acc
                 result = (A & 0x01) << 8;    // just get the C bit
                 A >>= 1;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x56:    // LSR zp,X
@@ -1114,7 +1232,6 @@ public class Em6502 {
                 result = (operand & 0x01) << 8;    // just get the C bit
                 NZFlags = operand >> 1;        // result in NZFlags
                 zeroPageWrite(operandAddress, NZFlags);
-                clock += 6;
                 break;
 
             case 0x5E:    // LSR abs,X
@@ -1123,64 +1240,53 @@ public class Em6502 {
                 result = (operand & 0x01) << 8;    // just get the C bit
                 NZFlags = operand >> 1;        // result in NZFlags
                 memoryWrite(operandAddress, NZFlags);
-                clock += 7;
                 break;
 
             case 0xEA:    // NOP
-                clock += 2;
                 break;
 
             case 0x09:    // ORA #imm
                 A |= eaimm();
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x0D:    // ORA abs
                 A |= memoryRead(eaabs());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x05:    // ORA zp
                 A |= zeroPageRead(eazp());
                 NZFlags = A;
-                clock += 3;
                 break;
 
             case 0x01:    // ORA (zp,X)
                 A |= memoryRead(eazpxind());
                 NZFlags = A;
-                clock += 6;
                 break;
 
             case 0x11:    // ORA (zp),Y
                 A |= memoryRead(eazpindy());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x15:    // ORA zp,X
                 A |= zeroPageRead(eazpx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x1D:    // ORA abs,X
                 A |= memoryRead(eaabsx());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x19:    // ORA abs,Y
                 A |= memoryRead(eaabsy());
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x48:    // PHA
                 push(A);
-                clock += 3;
                 break;
 
             case 0x08:    // PHP
@@ -1188,20 +1294,17 @@ public class Em6502 {
                 setZ(getFZ());
                 setC(getFC());
                 push(P);
-                clock += 3;
                 break;
 
             case 0x68:    // PLA
                 A = pop();
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x28:    // PLP
                 P = pop() | FLAG_B | FLAG_R; // B and R always set
                 setFC(getC());
                 setFNZ(getN(), getZ());
-                clock += 4;
                 if ((pendingIRQ > 0) && !getI()) {
                     pendingIRQ--;
                     assertIRQ();
@@ -1214,7 +1317,6 @@ public class Em6502 {
                 result = (operand << 1) | getFC_();
                 NZFlags = result;
                 memoryWrite(operandAddress, result);
-                clock += 6;
                 break;
 
             case 0x26:    // ROL zp
@@ -1223,14 +1325,12 @@ public class Em6502 {
                 result = (operand << 1) | getFC_();
                 NZFlags = result;
                 zeroPageWrite(operandAddress, result);
-                clock += 5;
                 break;
 
             case 0x2A:    // ROL acc
                 result = (A << 1) | getFC_();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x36:    // ROL zp,X
@@ -1239,7 +1339,6 @@ public class Em6502 {
                 result = (operand << 1) | getFC_();
                 NZFlags = result;
                 zeroPageWrite(operandAddress, result);
-                clock += 6;
                 break;
 
             case 0x3E:    // ROL abs,X
@@ -1248,7 +1347,6 @@ public class Em6502 {
                 result = (operand << 1) | getFC_();
                 NZFlags = result;
                 memoryWrite(operandAddress, result);
-                clock += 7;
                 break;
 
             case 0x6E:    // ROR abs
@@ -1258,7 +1356,6 @@ public class Em6502 {
                         (operand >> 1);
                 NZFlags = result;
                 memoryWrite(operandAddress, result);
-                clock += 6;
                 break;
 
             case 0x66:    // ROR zp
@@ -1268,14 +1365,12 @@ public class Em6502 {
                         (operand >> 1);
                 NZFlags = result;
                 zeroPageWrite(operandAddress, result);
-                clock += 5;
                 break;
 
             case 0x6A:    // ROR acc
                 result = ((A & 0x01) << 8) | (getFC_() << 7) | (A >> 1);
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x76:    // ROR zp,X
@@ -1285,7 +1380,6 @@ public class Em6502 {
                         (operand >> 1);
                 NZFlags = result;
                 zeroPageWrite(operandAddress, result);
-                clock += 6;
                 break;
 
             case 0x7E:    // ROR abs,X
@@ -1295,7 +1389,6 @@ public class Em6502 {
                         (operand >> 1);
                 NZFlags = result;
                 memoryWrite(operandAddress, result);
-                clock += 7;
                 break;
 
             case 0x40:    // RTI
@@ -1304,14 +1397,12 @@ public class Em6502 {
                 setFNZ(getN(), getZ());
                 PC = pop();    // splitting is necessary
                 PC += pop() << 8;    // because of nested macros
-                clock += 6;
                 break;
 
             case 0x60:    // RTS
                 PC = pop();    // splitting is necessary
                 PC += pop() << 8;    // because of nested macros
                 PC++;
-                clock += 6;
                 break;
 
             case 0xE9:    // SBC #imm
@@ -1321,7 +1412,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0xED:    // SBC abs
@@ -1331,7 +1421,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xE5:    // SBC zp
@@ -1341,7 +1430,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 3;
                 break;
 
             case 0xE1:    // SBC (zp,X)
@@ -1351,7 +1439,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 6;
                 break;
 
             case 0xF1:    // SBC (zp),Y
@@ -1361,7 +1448,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0xF5:    // SBC zp,X
@@ -1371,7 +1457,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xFD:    // SBC abs,X
@@ -1381,7 +1466,6 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0xF9:    // SBC abs,Y
@@ -1391,122 +1475,99 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 4;
                 break;
 
             case 0x38:    // SEC
                 setFC(true);
-                clock += 2;
                 break;
 
             case 0xF8:    // SED
                 setD(true);
-                clock += 2;
                 break;
 
             case 0x78:    // SEI
                 setI(true);
-                clock += 2;
                 break;
 
             case 0x8D:    // STA abs
                 memoryWrite(eaabs(), A);
-                clock += 4;
                 break;
 
             case 0x85:    // STA zp
                 zeroPageWrite(eazp(), A);
-                clock += 3;
                 break;
 
             case 0x81:    // STA (zp,X)
                 memoryWrite(eazpxind(), A);
-                clock += 6;
                 break;
 
             case 0x91:    // STA (zp),Y
                 memoryWrite(eazpindy(), A);
-                clock += 6;
                 break;
 
             case 0x95:    // STA zp,X
                 zeroPageWrite(eazpx(), A);
-                clock += 4;
                 break;
 
             case 0x9D:    // STA abs,X
                 memoryWrite(eaabsx(), A);
-                clock += 5;
                 break;
 
             case 0x99:    // STA abs,Y
                 memoryWrite(eaabsy(), A);
-                clock += 5;
                 break;
 
             case 0x8E:    // STX abs
                 memoryWrite(eaabs(), X);
-                clock += 4;
                 break;
 
             case 0x86:    // STX zp
                 zeroPageWrite(eazp(), X);
-                clock += 3;
                 break;
 
             case 0x96:    // STX zp,Y
                 zeroPageWrite(eazpy(), X);
-                clock += 4;
                 break;
 
             case 0x8C:    // STY abs
                 memoryWrite(eaabs(), Y);
-                clock += 4;
                 break;
 
             case 0x84:    // STY zp
                 zeroPageWrite(eazp(), Y);
-                clock += 3;
                 break;
 
             case 0x94:    // STY zp,X
                 zeroPageWrite(eazpx(), Y);
-                clock += 4;
                 break;
 
             case 0xAA:    // TAX
                 X = A;
                 NZFlags = X;
-                clock += 2;
                 break;
 
             case 0xA8:    // TAY
                 Y = A;
                 NZFlags = Y;
-                clock += 2;
                 break;
 
             case 0xBA:    // TSX
                 X = S;
                 NZFlags = X;
-                clock += 2;
                 break;
 
             case 0x8A:    // TXA
                 A = X;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             case 0x9A:    // TXS
                 S = X;
-                clock += 2;
                 break;
 
             case 0x98:    // TYA
                 A = Y;
                 NZFlags = A;
-                clock += 2;
                 break;
 
             /*
@@ -1521,103 +1582,86 @@ public class Em6502 {
                 adcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x32:    // AND (zp)
                 A &= memoryRead(eazpind());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x34:    // BIT zp,X
                 operand = zeroPageRead(eazpx());
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
-                clock += 3;
                 break;
 
             case 0x89:    // BIT #imm
                 operand = eaimm();
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
-                clock += 2;
                 break;
 
             case 0x3C:    // BIT abs,X
                 operand = eaabsx();
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
-                clock += 4;
                 break;
 
             case 0x80:    // BRA rr
                 operand = earel();
-                clock += 2;
                 branch(operand);
                 break;
 
             case 0xD2:    // CMP (zp)
                 result = 0x100 + A - memoryRead(eazpind());
                 NZFlags = result;
-                clock += 5;
                 break;
 
             case 0x3A:    // DEA acc
                 NZFlags = A + 0xff;
                 A = NZFlags & 0xff;
-                clock += 2;
                 break;
 
             case 0x52:    // EOR (zp)
                 A ^= memoryRead(eazpind());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x1A:    // INA acc
                 NZFlags = A + 1;
                 A = NZFlags & 0xff;
-                clock += 2;
                 break;
 
             case 0x7C:    // JMP (abs,X)
                 PC = eaabsxind();
-                clock += 6;
                 break;
 
             case 0xB2:    // LDA (zp)
                 A = memoryRead(eazpind());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x12:    // ORA (zp)
                 A |= memoryRead(eazpind());
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0xDA:    // PHX
                 push(X);
-                clock += 3;
                 break;
 
             case 0xFA:    // PLX
                 X = pop();
                 NZFlags = X;
-                clock += 4;
                 break;
 
             case 0x5A:    // PHY
                 push(Y);
-                clock += 3;
                 break;
 
             case 0x7A:    // PLY
                 Y = pop();
                 NZFlags = Y;
-                clock += 4;
                 break;
 
             case 0xF2:    // SBC (zp)
@@ -1627,32 +1671,26 @@ public class Em6502 {
                 sbcBCDAdjust();
                 A = result & 0xff;
                 NZFlags = A;
-                clock += 5;
                 break;
 
             case 0x92:    // STA (zp)
                 memoryWrite(eazpind(), A);
-                clock += 6;
                 break;
 
             case 0x9C:    // STZ abs
                 memoryWrite(eaabs(), 0);
-                clock += 4;
                 break;
 
             case 0x64:    // STZ zp
                 zeroPageWrite(eazp(), 0);
-                clock += 3;
                 break;
 
             case 0x74:    // STZ zp,X
                 zeroPageWrite(eazpx(), 0);
-                clock += 3;
                 break;
 
             case 0x9E:    // STZ abs,X
                 memoryWrite(eaabsx(), 0);
-                clock += 4;
                 break;
 
             case 0x1C:    // TRB abs
@@ -1661,7 +1699,6 @@ public class Em6502 {
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
                 memoryWrite(operandAddress, (operand & ~A) & 0xff);
-                clock += 5;
                 break;
 
             case 0x14:    // TRB zp
@@ -1670,7 +1707,6 @@ public class Em6502 {
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
                 zeroPageWrite(operandAddress, (operand & ~A) & 0xff);
-                clock += 5;
                 break;
 
             case 0x0C:    // TSB abs
@@ -1679,7 +1715,6 @@ public class Em6502 {
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
                 memoryWrite(operandAddress, operand | A);
-                clock += 5;
                 break;
 
             case 0x04:    // TSB zp
@@ -1688,11 +1723,9 @@ public class Em6502 {
                 setV((operand & 0x40) != 0);
                 NZFlags = ((operand & 0x80) << 2) | (A & operand);
                 zeroPageWrite(operandAddress, operand | A);
-                clock += 5;
                 break;
 
             default:    // unknown instructions
-                clock += 2;
         }
 
 //		if (PC == 0xB30)
@@ -1701,10 +1734,29 @@ public class Em6502 {
 
     public final int executeInstructions(int num) {
         // Initialize
-        int clockStart = clock;
+        long clockStart = clock;
+
+        if (engine == ENGINE_TRANSLATOR) {
+            executeBlocks(num);
+            return (int) (clock - clockStart);
+        }
+        if (engine == ENGINE_PREDECODED) {
+            executeDecoded(num);
+            return (int) (clock - clockStart);
+        }
 
         for (; num >= 16; num -= 16) {
             PC &= 0xffff;            // Keep PC "sort of" bounded
+            if (scheduler.next - clock <= 14 * MAX_INSTRUCTION_CYCLES) {
+                // an event may be due within the group
+                for (int i = 0; i < 14; i++) {
+                    executeInstruction();
+                    if (clock >= scheduler.next) {
+                        dispatchEvents();
+                    }
+                }
+                continue;
+            }
             executeInstruction();
             executeInstruction();
             executeInstruction();
@@ -1723,9 +1775,203 @@ public class Em6502 {
         PC &= 0xffff;
         for (; num > 0; num--) {
             executeInstruction();
+            if (clock >= scheduler.next) {
+                dispatchEvents();
+            }
         }
 
-        return (clock - clockStart) & 0x7fffffff;
+        return (int) (clock - clockStart);
+    }
+
+    /**
+     * Runs translated blocks, falls back to single instructions where
+     * no block can be used (I/O, zero page, stack, page crossing, step count).
+     */
+    private void executeBlocks(int num) {
+        PC &= 0xffff;
+        while (num > 0) {
+            int[] code = lookupBlock(PC).code;
+            if (code.length == 0 || code.length > num) {
+                executeInstruction();
+                num--;
+                if (clock >= scheduler.next) {
+                    dispatchEvents();
+                }
+                continue;
+            }
+
+            int version = codeVersion;
+            for (int i = 0; i < code.length; i++) {
+                opcode = code[i] & 0xff;
+                fetched = code[i] >>> 8;
+                PC += OPCODE_SIZE[opcode];
+                execute();
+                clock += OPCODE_CYCLES[opcode];
+                num--;
+                if (clock >= scheduler.next) {
+                    dispatchEvents();
+                    break;
+                }
+                // self modifying code or bank switching, the rest of the block is stale
+                if (codeVersion != version) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs instructions from the decoded cache, falls back to fetching
+     * where it can't be used (I/O, zero page, stack, page crossing).
+     */
+    private void executeDecoded(int num) {
+        PC &= 0xffff;
+        for (; num > 0; num--) {
+            int entry = lookupDecoded(PC);
+            if (entry == 0) {
+                executeInstruction();
+            } else {
+                opcode = entry & 0xff;
+                fetched = (entry >> 8) & 0xffff;
+                PC += OPCODE_SIZE[opcode];
+                execute();
+                clock += OPCODE_CYCLES[opcode];
+            }
+            if (clock >= scheduler.next) {
+                dispatchEvents();
+            }
+        }
+    }
+
+    /**
+     * Fires the events due and takes the interrupts they raised at once
+     */
+    private void dispatchEvents() {
+        scheduler.dispatch(clock);
+        checkInterrupts();
+    }
+
+    /**
+     * @return the decoded instruction at address, 0 if it can't be decoded
+     */
+    private int lookupDecoded(int address) {
+        // zero page and stack are written without invalidation
+        if (address < 0x200 || address > 0xffff) {
+            return 0;
+        }
+        int physical = physicalAddress(address);
+        if (physical < 0) {
+            return 0;
+        }
+
+        if (decoded == null) {
+            decoded = new int[physicalSize()];
+        }
+        int entry = decoded[physical];
+        if (entry == 0) {
+            entry = decode(physical);
+            decoded[physical] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * @return DECODED_VALID | operand << 8 | opcode, 0 if the instruction crosses the page
+     */
+    private int decode(int physical) {
+        int op = physicalRead(physical) & 0xff;
+        int size = OPCODE_SIZE[op];
+        if ((physical & 0xff) + size > 0x100) {
+            return 0;
+        }
+
+        int operand = 0;
+        if (size > 1) {
+            operand = physicalRead(physical + 1) & 0xff;
+        }
+        if (size > 2) {
+            operand |= (physicalRead(physical + 2) & 0xff) << 8;
+        }
+        return DECODED_VALID | (operand << 8) | op;
+    }
+
+    /**
+     * @return the block starting at address, {@link #NO_BLOCK} if it can't be translated
+     */
+    private Block lookupBlock(int address) {
+        // zero page and stack are written without invalidation
+        if (address < 0x200 || address > 0xffff) {
+            return NO_BLOCK;
+        }
+        int physical = physicalAddress(address);
+        if (physical < 0) {
+            return NO_BLOCK;
+        }
+
+        if (blockPages == null) {
+            int pages = (physicalSize() + 0xff) >> 8;
+            blockPages = new Block[pages][];
+            codeBits = new long[pages << 2];
+        }
+        Block[] page = blockPages[physical >> 8];
+        if (page == null) {
+            page = new Block[0x100];
+            blockPages[physical >> 8] = page;
+        }
+        Block block = page[physical & 0xff];
+        if (block == null) {
+            block = translate(physical);
+            page[physical & 0xff] = block;
+        }
+        return block;
+    }
+
+    /**
+     * Decodes a basic block from memory, it ends after a control transfer
+     * or before an instruction crossing the page.
+     */
+    private Block translate(int physical) {
+        int[] code = new int[BLOCK_MAX_INSTRUCTIONS];
+        int pageEnd = (physical | 0xff) + 1;
+        int count = 0;
+
+        int address = physical;
+        while (count < BLOCK_MAX_INSTRUCTIONS) {
+            int op = physicalRead(address) & 0xff;
+            int size = OPCODE_SIZE[op];
+            if (address + size > pageEnd) {
+                break;
+            }
+
+            int operand = 0;
+            if (size > 1) {
+                operand = physicalRead(address + 1) & 0xff;
+            }
+            if (size > 2) {
+                operand |= (physicalRead(address + 2) & 0xff) << 8;
+            }
+            code[count++] = op | (operand << 8);
+
+            for (int i = 0; i < size; i++) {
+                codeBits[(address + i) >> 6] |= 1L << (address + i);
+            }
+            address += size;
+
+            if (isBlockEnd(op)) {
+                break;
+            }
+        }
+
+        return count == 0 ? NO_BLOCK : new Block(Arrays.copyOf(code, count));
+    }
+
+    /** Control transfer instructions, they end a basic block. */
+    private static boolean isBlockEnd(int opcode) {
+        return switch (opcode) {
+            case 0x00, 0x10, 0x20, 0x30, 0x40, 0x50, 0x60, 0x70, 0x80, 0x90, 0xB0, 0xD0, 0xF0, // BRK, branches, JSR, RTI, RTS
+                 0x4C, 0x6C, 0x7C -> true; // JMP
+            default -> false;
+        };
     }
 
     public final void checkInterrupts() {
@@ -1781,4 +2027,89 @@ public class Em6502 {
             exceptionRegister ^= SIG_6502_IRQ;
         }
     }
+
+    /*
+     * State
+     */
+
+    /**
+     * @return bytes written by {@link #saveState(ByteBuffer)}
+     */
+    protected int getStateSize() {
+        return getCoreStateSize() + mem.length;
+    }
+
+    /**
+     * Writes the core state and memory
+     */
+    protected void saveState(ByteBuffer buffer) {
+        saveCoreState(buffer);
+        buffer.put(mem);
+    }
+
+    /**
+     * @return bytes written by {@link #saveCoreState(ByteBuffer)}
+     */
+    protected int getCoreStateSize() {
+        return 6 * 4 + 8 + 4 * 4 + scheduler.getStateSize();
+    }
+
+    /**
+     * Writes everything but memory: registers, lazy flags, pending signals and scheduled events
+     */
+    protected void saveCoreState(ByteBuffer buffer) {
+        buffer.putInt(A).putInt(X).putInt(Y).putInt(P).putInt(S).putInt(PC);
+        buffer.putLong(clock);
+        buffer.putInt(NZFlags).putInt(result);
+        buffer.putInt(exceptionRegister).putInt(pendingIRQ);
+        scheduler.saveState(buffer);
+    }
+
+    /**
+     * Reads what {@link #saveCoreState(ByteBuffer)} wrote
+     */
+    protected void loadCoreState(ByteBuffer buffer) {
+        A = buffer.getInt();
+        X = buffer.getInt();
+        Y = buffer.getInt();
+        P = buffer.getInt();
+        S = buffer.getInt();
+        PC = buffer.getInt();
+        clock = buffer.getLong();
+        NZFlags = buffer.getInt();
+        result = buffer.getInt();
+        exceptionRegister = buffer.getInt();
+        pendingIRQ = buffer.getInt();
+        scheduler.loadState(buffer);
+    }
+
+    /**
+     * Copies registers, lazy flags, pending signals, memory and scheduled events
+     * of another CPU, cached code is dropped
+     */
+    protected void copyState(Em6502 from) {
+        A = from.A;
+        X = from.X;
+        Y = from.Y;
+        P = from.P;
+        S = from.S;
+        PC = from.PC;
+        clock = from.clock;
+        NZFlags = from.NZFlags;
+        result = from.result;
+        exceptionRegister = from.exceptionRegister;
+        pendingIRQ = from.pendingIRQ;
+        System.arraycopy(from.mem, 0, mem, 0, mem.length);
+        scheduler.copyState(from.scheduler);
+        flushCode();
+    }
+
+    /**
+     * Reads what {@link #saveState(ByteBuffer)} wrote, cached code is dropped
+     */
+    protected void loadState(ByteBuffer buffer) {
+        loadCoreState(buffer);
+        buffer.get(mem);
+        flushCode();
+    }
 }
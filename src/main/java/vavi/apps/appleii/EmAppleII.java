@@ -13,6 +13,16 @@ import java.lang.System.Logger.Level;
 import static java.lang.System.getLogger;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 
 public class EmAppleII extends Em6502 implements Runnable {
@@ -65,14 +75,36 @@ public class EmAppleII extends Em6502 implements Runnable {
 
     public static final int MEM_END = 0x28000;
 
+    private static final int PAGE_SIZE = 0x100;
+
+    /**
+     * Physical memory past the zero page and stack (those are in {@link #mem}),
+     * one array per page. A fork shares the arrays with its parent, a page is
+     * copied by the first write of either while it is marked in {@link #sharedPages}.
+     */
+    private final byte[][] pages = new byte[MEM_END >> 8][];
+    /** physical pages whose array may be shared with other machines */
+    private final long[] sharedPages = new long[((MEM_END >> 8) + 63) >> 6];
+    /** empty slot ROM, shared by all machines */
+    private static final byte[] FLOATING_PAGE = new byte[PAGE_SIZE];
+
+    static {
+        Arrays.fill(FLOATING_PAGE, (byte) 0xA0);
+    }
+
     // Peripherals
     public final Paddle paddle;
     public final Peripheral[] slots;
     public AppleSpeaker speaker;
 
-    // Graphics	(dirty buffer every 0x80 bytes)
+    // Graphics (dirty bitmap, one bit every 0x80 bytes of the video pages at 0x0000-0x5fff)
     public int graphicsMode;
-    public final boolean[] graphicsDirty = new boolean[0x10000 >> 7];
+    public static final int GRAPHICS_DIRTY_WORDS = (0x6000 >> 7) >> 6;
+    /** written since the last publication, only touched by the emulator thread */
+    private final long[] graphicsWritten = new long[GRAPHICS_DIRTY_WORDS];
+    /** published for the display, or'ed with release and taken with acquire */
+    private final long[] graphicsDirty = new long[GRAPHICS_DIRTY_WORDS];
+    private static final VarHandle GRAPHICS_DIRTY = MethodHandles.arrayElementVarHandle(long[].class);
 
     public static final int GR_TEXT = (1 << 0);
     public static final int GR_MIXMODE = (1 << 1);
@@ -83,14 +115,54 @@ public class EmAppleII extends Em6502 implements Runnable {
     public static final int GR_ALTCHAR = (1 << 6);
     public static final int GR_DHIRES = (1 << 7);
 
+    // Video timing, 65 cycles per line, 192 visible lines and 70 in vertical blank
+    public static final int CYCLES_PER_LINE = 65;
+    public static final int LINES_PER_FRAME = 262;
+    public static final int CYCLES_PER_FRAME = CYCLES_PER_LINE * LINES_PER_FRAME;
+    /** cycle of a frame the vertical blank starts, frames start at clock 0 */
+    public static final int VISIBLE_LINES = 192;
+    public static final int VBL_START = CYCLES_PER_LINE * VISIBLE_LINES;
+    /** cycles of a line before the beam shows it, the mode at the end of them applies to the line */
+    private static final int HBL_CYCLES = 25;
+
+    private final int vblEventId;
+    /** called at the start of each vertical blank with the pacing of the interval */
+    private volatile Consumer<Pacing> frameListener;
+    /** pacing of the running interval */
+    private Pacing intervalPacing = Pacing.REALTIME;
+    /** graphics mode of each visible line of the running frame, null when not tracked */
+    private volatile int[] lineModes;
+    /** lines of the running frame whose mode is known */
+    private int lineModesCount;
+
     // Sound
     public static final int SPEAKER_FLIPS_BITS = 12;
     public static final int SPEAKER_FLIPS_SIZE = 1 << SPEAKER_FLIPS_BITS;
     public static final int SPEAKER_FLIPS_MASK = SPEAKER_FLIPS_SIZE - 1;
 
-    public final int[] speakerFlips = new int[SPEAKER_FLIPS_SIZE];
+    public final long[] speakerFlips = new long[SPEAKER_FLIPS_SIZE];
     public int speakerFlipsPointer = 0;
 
+    // Rewind
+    /** physical pages written since the last rewind checkpoint, zero page and stack are not tracked */
+    final long[] dirtyPages = new long[((MEM_END >> 8) + 63) >> 6];
+    private Rewind rewind;
+
+    // Inputs
+    private final Queue<InputEvent> inputs = new ConcurrentLinkedQueue<>();
+    private InputRecorder recorder;
+    /** drive, resource */
+    private BiConsumer<Integer, String> diskLoader;
+    private final Random random;
+    /** of the session, the peripherals are seeded by it */
+    private long seed;
+
+    // Snapshot
+    /** "A2SS" */
+    public static final int SNAPSHOT_MAGIC = 0x41325353;
+    public static final int SNAPSHOT_VERSION = 3;
+    private static final int SNAPSHOT_HEADER_SIZE = 3 * 4;
+
     /** Default ROM */
     private static final int[] defaultRom = {
             // Reset routine
@@ -155,7 +227,8 @@ public class EmAppleII extends Em6502 implements Runnable {
     private boolean isRestart;
 
     private int cpuSpeed;
-    private int clocksPerInterval;
+    private Pacing pacing = Pacing.REALTIME;
+    private boolean isDiskAccelerated = true;
 
     private int refreshRate;
     private long refreshInterval;
@@ -166,9 +239,45 @@ public class EmAppleII extends Em6502 implements Runnable {
     // Keyboard
     private int keyboardLatch;
 
-    // Memory offsets
-    private final int[] memoryReadOffset = new int[0x101];
-    private final int[] memoryWriteOffset = new int[0x101];
+    /*
+     * Page tables, one entry per 256 byte page, the last one for addresses past 0xffff.
+     * An entry is the physical address of the page, or'ed with a PAGE_ flag
+     * when the page needs more than a plain access.
+     */
+    private final int[] readPages = new int[0x101];
+    private final int[] writePages = new int[0x101];
+    /** arrays of the read page table entries, null where an entry is not plain memory */
+    private final byte[][] readMemory = new byte[0x101][];
+
+    /** I/O page, it goes to ioRead/ioWrite */
+    private static final int PAGE_IO = 0x80000000;
+    /** text or graphics page, writes mark graphicsWritten */
+    private static final int PAGE_VIDEO = 0x40000000;
+    /** ROM or write protected language card, writes are dropped */
+    private static final int PAGE_READ_ONLY = 0x20000000;
+    /** shared page, the first write copies it (write fault) */
+    private static final int PAGE_SHARED = 0x10000000;
+    /** zero page or stack, it goes to mem */
+    private static final int PAGE_ZERO = 0x08000000;
+    private static final int PAGE_FLAGS = PAGE_IO | PAGE_VIDEO | PAGE_READ_ONLY | PAGE_SHARED | PAGE_ZERO;
+
+    /** I/O read handler of an address of the I/O page */
+    @FunctionalInterface
+    public interface IoReadHandler {
+        /** @param address 0x00-0xff, offset from 0xc000 */
+        int ioRead(int address);
+    }
+
+    /** I/O write handler of an address of the I/O page */
+    @FunctionalInterface
+    public interface IoWriteHandler {
+        /** @param address 0x00-0xff, offset from 0xc000 */
+        void ioWrite(int address, int value);
+    }
+
+    // I/O handlers, one per address of 0xc000-0xc0ff
+    private final IoReadHandler[] ioReadHandlers = new IoReadHandler[0x100];
+    private final IoWriteHandler[] ioWriteHandlers = new IoWriteHandler[0x100];
 
     // Language card state
     private boolean isLcReadEnable;
@@ -181,12 +290,13 @@ public class EmAppleII extends Em6502 implements Runnable {
     private boolean isAuxRead;
     private boolean isAuxWrite;
     private boolean isAuxZeroPage;
-    private boolean isVideoVBL;
 
     // Thread stuff
     private boolean isPaused = true;
     private Thread thread;
     private String threadError = null;
+    /** run by an {@link EmulatorFarm} */
+    volatile boolean isHosted;
 
     // Step mode
     private boolean isStepMode = false;
@@ -196,16 +306,33 @@ public class EmAppleII extends Em6502 implements Runnable {
     final AppleIIGo.View view;
 
     /**
-     * Apple II class constructor
+     * Apple II class constructor, randomly seeded
      */
     public EmAppleII(AppleIIGo.View view) {
+        this(view, new Random().nextLong());
+    }
+
+    /**
+     * Apple II class constructor, powered on with a random seed for a deterministic session
+     *
+     * @see #setSeed(long)
+     */
+    public EmAppleII(AppleIIGo.View view, long seed) {
         this.view = view;
+        this.seed = seed;
+        random = new Random(seed);
 
         // Allocate compute memory
-        mem = new byte[MEM_END];
+        mem = new byte[MEM_PHYS_RAM1];
+        for (int page = MEM_PHYS_RAM1 >> 8; page < pages.length; page++) {
+            pages[page] = new byte[PAGE_SIZE];
+        }
 
         // Initialize CPU
+        initIoHandlers();
         initMemoryMap();
+        vblEventId = scheduler.register(this::startVbl);
+        scheduler.schedule(vblEventId, VBL_START);
         setRandomSeed();
         setCpuSpeed(1000);
         reset();
@@ -214,7 +341,7 @@ public class EmAppleII extends Em6502 implements Runnable {
         loadDefaultRom();
 
         // Setup paddles
-        paddle = new Paddle(() -> this.clock);
+        paddle = new Paddle(this::getClock);
 
         // Setup expansion slots
         slots = new Peripheral[8];
@@ -223,11 +350,49 @@ public class EmAppleII extends Em6502 implements Runnable {
     }
     }
 
+    /**
+     * Fork constructor, the memory pages are shared with the machine forked.
+     * There is no power on: the state is copied by {@link #copyState(Em6502)}
+     * once the peripherals are set up.
+     */
+    private EmAppleII(AppleIIGo.View view, EmAppleII from) {
+        this.view = view;
+        seed = from.seed;
+        random = new Random(seed);
+
+        mem = new byte[MEM_PHYS_RAM1];
+        sharePages(from);
+
+        initIoHandlers();
+        vblEventId = scheduler.register(this::startVbl);
+
+        paddle = new Paddle(this::getClock);
+
+        slots = new Peripheral[8];
+    }
+
     /**
      * Set random seed (so programs start randomly)
      */
     public void setRandomSeed() {
-        mem[0xcd] = (byte) System.currentTimeMillis();
+        mem[0xcd] = (byte) random.nextInt();
+    }
+
+    /**
+     * Seeds the random seed of a restart and the peripherals' floating bus
+     * for a deterministic session. At power on, i.e. before the first cycle,
+     * the random seed in memory is drawn again, so that the machine is
+     * the same as one constructed with the seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+        if (clock == 0) {
+            setRandomSeed();
+        }
+        for (int slot = 1; slot < 8; slot++) {
+            slots[slot].setSeed(seed + slot);
+        }
     }
 
     /**
@@ -235,77 +400,110 @@ public class EmAppleII extends Em6502 implements Runnable {
      */
     public void loadDefaultRom() {
         for (int offset = 0; offset < 0x1d0; offset++) {
-            mem[(MEM_ROM_MAIN_LOW + 0x3000 - 0x1d0) + offset] = (byte) defaultRom[offset];
-    }
+            physicalWrite((MEM_ROM_MAIN_LOW + 0x3000 - 0x1d0) + offset, defaultRom[offset]);
+        }
+        memoryLoaded();
     }
 
     /**
-     * Loads ROM
+     * Memory was loaded directly, not through the CPU
      */
-    private static boolean isValidRom(byte[] rom, int offset) {
-        // Integer BASIC?
-        if ((rom[offset + 0x1000] & 0xff) == 0x20) {
-            logger.log(Level.TRACE, "ROM: Integer BASIC");
-            return true;
-        }
+    private void memoryLoaded() {
+        flushCode();
+        predecodeRom();
+        Arrays.fill(dirtyPages, -1);
+    }
 
-        // Applesoft BASIC?
-        if ((rom[offset + 0x1000] & 0xff) == 0x4c) {
-            logger.log(Level.TRACE, "ROM: Applesoft BASIC");
-            return true;
-        }
+    /**
+     * ROM is never written, so it is decoded once
+     */
+    private void predecodeRom() {
+        predecode(MEM_ROM_MAIN_LOW, MEM_MAIN_ZP);
+    }
 
-        return false;
+    @Override
+    public void setEngine(int value) {
+        super.setEngine(value);
+        predecodeRom();
     }
 
     /**
      * @throws IllegalStateException
      */
     public void loadRom(AppleIIGo.Dao dao, String resource) {
+        loadRom(readRom(dao, resource), resource);
+    }
+
+    /**
+     * Reads a ROM image, it may be shared by machines
+     *
+     * @see Rom#Rom(byte[], String)
+     */
+    public static byte[] readRom(AppleIIGo.Dao dao, String resource) {
         byte[] rom = new byte[0x8000];
-        int offset;
 
         dao.openInputStream(resource);
         dao.read(rom, 0, 0x08000);
         dao.closeInputStream();
 
-        if (isValidRom(rom, 0x0)) {
-            offset = 0x0;
-        } else if (isValidRom(rom, 0x1000)) {
-            offset = 0x1000;
-        } else if (isValidRom(rom, 0x2000)) {
-            offset = 0x2000;
-        } else {
-            throw new IllegalArgumentException(resource);
-        }
+        return rom;
+    }
 
-        // Copy main ROM
-        System.arraycopy(rom, offset, mem, MEM_ROM_MAIN_LOW, 0x03000);
+    /**
+     * @param rom read by {@link #readRom(AppleIIGo.Dao, String)}, it is not modified
+     * @param resource for the error message
+     * @throws IllegalArgumentException not a ROM image
+     */
+    public void loadRom(byte[] rom, String resource) {
+        loadRom(new Rom(rom, resource));
+    }
 
-        // Copy internal ROM
-        System.arraycopy(rom, offset + 0x3000, mem, MEM_ROM_INTERNAL + 0x00000, 0x01000);
-        System.arraycopy(rom, offset + 0x3800, mem, MEM_ROM_EXTERNAL + 0x00800, 0x00800);
+    /**
+     * Installs the pages of a ROM image as shared pages, they are not copied
+     *
+     * @param rom e.g. one per image for many machines
+     */
+    public void loadRom(Rom rom) {
+        for (int i = 0; i < rom.pages.length; i++) {
+            if (rom.pages[i] != null) {
+                sharePage(Rom.FIRST_PAGE + i, rom.pages[i]);
+            }
+        }
 
-        for (int slot = 0x100; slot <= 0x700; slot += 0x100) {
-            if (mem[MEM_ROM_EXTERNAL + slot] == 0) {
+        for (int slot = 1; slot < 8; slot++) {
+            if (physicalRead(MEM_ROM_EXTERNAL + (slot << 8)) == 0) {
                 // 0 data is a bad default for empty external slots (e.g. Mabel's Mansion reboots)
                 // so ideally we would emulate the floating bus, but for now we just hardcode 0xA0
-                for (int i = 0; i <= 0xFF; i++)
-                    mem[MEM_ROM_EXTERNAL + slot + i] = (byte) 0xA0;
+                sharePage((MEM_ROM_EXTERNAL >> 8) + slot, FLOATING_PAGE);
             }
         }
+        updatePageTables();
+        memoryLoaded();
     }
 
     /**
-     * Set peripheral
+     * Set peripheral, its I/O handlers are registered at 0x80 + slot * 0x10
      */
     public void setPeripheral(Peripheral peripheral, int slot) {
         slots[slot] = peripheral;
+        peripheral.setSeed(seed + slot);
+
+        // slot 0 I/O is the language card
+        if (slot > 0) {
+            IoReadHandler read = peripheral::ioRead;
+            IoWriteHandler write = peripheral::ioWrite;
+            for (int address = 0x80 + (slot << 4); address < 0x90 + (slot << 4); address++) {
+                ioReadHandlers[address] = read;
+                ioWriteHandlers[address] = write;
+            }
+        }
 
-        int offset = MEM_ROM_EXTERNAL + (slot << 8);
+        byte[] rom = new byte[PAGE_SIZE];
         for (int i = 0; i < 0x100; i++) {
-            mem[offset + i] = (byte) peripheral.memoryRead(i);
-    }
+            rom[i] = (byte) peripheral.memoryRead(i);
+        }
+        writePage((MEM_ROM_EXTERNAL >> 8) + slot, rom, 0);
+        memoryLoaded();
     }
 
     /**
@@ -344,6 +542,87 @@ public class EmAppleII extends Em6502 implements Runnable {
 //logger.log(Level.TRACE, "APPLE: " + keyboardLatch + ", " + ((char) key));
     }
 
+    /**
+     * Posts an input, it is applied at the start of the next emulator interval,
+     * or right away when paused
+     */
+    public void postInput(InputEvent event) {
+        if (isPaused && !isHosted) {
+            applyInput(event);
+        } else {
+            inputs.add(event);
+        }
+    }
+
+    /**
+     * Applies the posted inputs, called from the emulator thread
+     */
+    public void applyInputs() {
+        InputEvent event;
+        while ((event = inputs.poll()) != null) {
+            applyInput(event);
+        }
+    }
+
+    /**
+     * Applies an input at the current clock and records it
+     */
+    void applyInput(InputEvent event) {
+        event = event.at(clock);
+        InputRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.record(event);
+        }
+
+        switch (event.type) {
+        case InputEvent.KEY:
+            setKeyLatch(event.value);
+            break;
+        case InputEvent.BUTTON:
+            paddle.setButton(event.index, event.value != 0);
+            break;
+        case InputEvent.PADDLE:
+            paddle.setPaddlePos(event.index, event.value);
+            break;
+        case InputEvent.DISK:
+            if (diskLoader != null) {
+                diskLoader.accept(event.index, event.resource);
+            }
+            break;
+        case InputEvent.RESET:
+            if (event.value != 0) {
+                restart();
+            } else {
+                reset();
+            }
+            break;
+        }
+    }
+
+    /**
+     * Set input recorder, the machine is seeded with its seed, null to stop
+     */
+    public void setRecorder(InputRecorder value) {
+        if (value != null) {
+            setSeed(value.getSeed());
+        }
+        recorder = value;
+    }
+
+    /**
+     * Get input recorder
+     */
+    public InputRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Set what a disk input does
+     */
+    public void setDiskLoader(BiConsumer<Integer, String> value) {
+        diskLoader = value;
+    }
+
     /**
      * Restart
      */
@@ -360,6 +639,255 @@ public class EmAppleII extends Em6502 implements Runnable {
         assertReset();
     }
 
+    /**
+     * Snapshot size in bytes
+     */
+    public int getSnapshotSize() {
+        return SNAPSHOT_HEADER_SIZE + getStateSize();
+    }
+
+    /**
+     * Takes a snapshot, the emulator must be paused or this must be called from its thread
+     *
+     * @return a buffer positioned at 0
+     */
+    public ByteBuffer snapshot() {
+        ByteBuffer buffer = ByteBuffer.allocate(getSnapshotSize());
+        snapshot(buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Writes a snapshot at the buffer position, e.g. into a file mapped by
+     * {@link java.nio.channels.FileChannel#map}. The buffer needs {@link #getSnapshotSize()} bytes.
+     */
+    public void snapshot(ByteBuffer buffer) {
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(getSnapshotSize());
+        saveState(buffer);
+    }
+
+    /**
+     * Restores a snapshot from the buffer position, the emulator must be paused
+     * or this must be called from its thread. Peripherals must be set up the same way.
+     *
+     * @throws IllegalArgumentException not a snapshot of this version or setup
+     */
+    public void restore(ByteBuffer buffer) {
+        int magic = buffer.getInt();
+        int version = buffer.getInt();
+        int size = buffer.getInt();
+        if (magic != SNAPSHOT_MAGIC || version != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException(String.format("snapshot: %08x version %d", magic, version));
+        }
+        if (size != getSnapshotSize()) {
+            throw new IllegalArgumentException("snapshot size: " + size + ", expected: " + getSnapshotSize());
+        }
+
+        loadState(buffer);
+    }
+
+    /**
+     * Forks this machine with the same view
+     *
+     * @see #fork(AppleIIGo.View)
+     */
+    public EmAppleII fork() {
+        return fork(view);
+    }
+
+    /**
+     * Forks this machine, the emulator must be paused or this must be called from its thread.
+     * The fork is paused and can run on its own thread. Memory pages and disk tracks
+     * are shared until written, by either machine.
+     */
+    public EmAppleII fork(AppleIIGo.View view) {
+        EmAppleII fork = new EmAppleII(view, this);
+        fork.setCpuSpeed(cpuSpeed);
+        fork.setPacing(pacing);
+        fork.setDiskAccelerated(isDiskAccelerated);
+        for (int slot = 1; slot < 8; slot++) {
+            fork.setPeripheral(slots[slot].fork(fork), slot);
+        }
+        if (speaker != null) {
+            fork.speaker = new AppleSpeaker(fork);
+            fork.speaker.setVolume(speaker.getVolume());
+        }
+
+        fork.copyState(this);
+        fork.setEngine(getEngine());
+        return fork;
+    }
+
+    /**
+     * Memory pages are shared, not copied
+     */
+    @Override
+    protected void copyState(Em6502 from) {
+        super.copyState(from);
+
+        EmAppleII apple = (EmAppleII) from;
+        sharePages(apple);
+        keyboardLatch = apple.keyboardLatch;
+        graphicsMode = apple.graphicsMode;
+        isRestart = apple.isRestart;
+        isLcReadEnable = apple.isLcReadEnable;
+        isLcWriteEnable = apple.isLcWriteEnable;
+        isLcBank2 = apple.isLcBank2;
+        isRomInternal = apple.isRomInternal;
+        isRomC3External = apple.isRomC3External;
+        isAuxRead = apple.isAuxRead;
+        isAuxWrite = apple.isAuxWrite;
+        isAuxZeroPage = apple.isAuxZeroPage;
+        initMemoryMap();
+        paddle.copyState(apple.paddle);
+        if (speaker != null && apple.speaker != null) {
+            speaker.setFlipState(apple.speaker.getFlipState());
+        }
+        Arrays.fill(dirtyPages, -1);
+        markGraphicsDirty();
+    }
+
+    @Override
+    protected int getStateSize() {
+        int size = super.getStateSize() + MEM_END - MEM_PHYS_RAM1;
+        for (int slot = 1; slot < 8; slot++) {
+            size += 4 + slots[slot].getMediaSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the core state, memory and the media in the slots
+     */
+    @Override
+    protected void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        for (int page = MEM_PHYS_RAM1 >> 8; page < pages.length; page++) {
+            buffer.put(pages[page]);
+        }
+
+        for (int slot = 1; slot < 8; slot++) {
+            buffer.putInt(slots[slot].getMediaSize());
+            slots[slot].saveMedia(buffer);
+        }
+    }
+
+    @Override
+    protected void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        for (int page = MEM_PHYS_RAM1 >> 8; page < pages.length; page++) {
+            if ((sharedPages[page >> 6] & (1L << page)) != 0) {
+                // e.g. ROM, it stays shared if it is the same
+                if (buffer.slice(buffer.position(), PAGE_SIZE).equals(ByteBuffer.wrap(pages[page]))) {
+                    buffer.position(buffer.position() + PAGE_SIZE);
+                    continue;
+                }
+                pages[page] = new byte[PAGE_SIZE];
+                sharedPages[page >> 6] &= ~(1L << page);
+            }
+            buffer.get(pages[page]);
+        }
+        updatePageTables();
+
+        for (int slot = 1; slot < 8; slot++) {
+            int size = buffer.getInt();
+            if (size != slots[slot].getMediaSize()) {
+                throw new IllegalArgumentException("slot " + slot + " media size: " + size);
+            }
+            slots[slot].loadMedia(buffer);
+        }
+
+        memoryLoaded();
+        markGraphicsDirty();
+    }
+
+    /**
+     * Goes back to a rewind checkpoint, memory has been restored already
+     */
+    void loadCheckpoint(ByteBuffer core) {
+        loadCoreState(core);
+        flushCode();
+        predecodeRom();
+        markGraphicsDirty();
+    }
+
+    /**
+     * Set rewind buffer, it takes a checkpoint from the emulator thread, null to stop
+     */
+    public void setRewind(Rewind value) {
+        rewind = value;
+    }
+
+    /**
+     * Get rewind buffer
+     */
+    public Rewind getRewind() {
+        return rewind;
+    }
+
+    @Override
+    protected int getCoreStateSize() {
+        int size = super.getCoreStateSize();
+        size += 2 * 4 + 9 + Paddle.STATE_SIZE + 4;
+        for (int slot = 1; slot < 8; slot++) {
+            size += 4 + slots[slot].getStateSize();
+        }
+        return size;
+    }
+
+    /**
+     * Writes everything but memory and media: CPU, soft switches,
+     * paddle, speaker and the peripheral registers.
+     * The memory map is rebuilt from the soft switches.
+     */
+    @Override
+    protected void saveCoreState(ByteBuffer buffer) {
+        super.saveCoreState(buffer);
+
+        buffer.putInt(keyboardLatch).putInt(graphicsMode);
+        for (boolean value : new boolean[] {
+                isRestart, isLcReadEnable, isLcWriteEnable, isLcBank2,
+                isRomInternal, isRomC3External, isAuxRead, isAuxWrite, isAuxZeroPage}) {
+            buffer.put((byte) (value ? 1 : 0));
+        }
+        paddle.saveState(buffer);
+        buffer.putInt(speaker != null ? speaker.getFlipState() : 0);
+        for (int slot = 1; slot < 8; slot++) {
+            buffer.putInt(slots[slot].getStateSize());
+            slots[slot].saveState(buffer);
+        }
+    }
+
+    @Override
+    protected void loadCoreState(ByteBuffer buffer) {
+        super.loadCoreState(buffer);
+
+        keyboardLatch = buffer.getInt();
+        graphicsMode = buffer.getInt();
+        isRestart = buffer.get() != 0;
+        isLcReadEnable = buffer.get() != 0;
+        isLcWriteEnable = buffer.get() != 0;
+        isLcBank2 = buffer.get() != 0;
+        isRomInternal = buffer.get() != 0;
+        isRomC3External = buffer.get() != 0;
+        isAuxRead = buffer.get() != 0;
+        isAuxWrite = buffer.get() != 0;
+        isAuxZeroPage = buffer.get() != 0;
+        initMemoryMap();
+        paddle.loadState(buffer);
+        int flipState = buffer.getInt();
+        if (speaker != null) {
+            speaker.setFlipState(flipState);
+        }
+        for (int slot = 1; slot < 8; slot++) {
+            int size = buffer.getInt();
+            if (size != slots[slot].getStateSize()) {
+                throw new IllegalArgumentException("slot " + slot + " state size: " + size);
+            }
+            slots[slot].loadState(buffer);
+        }
+    }
+
     /**
      * Set CPU speed
      */
@@ -372,7 +900,6 @@ public class EmAppleII extends Em6502 implements Runnable {
 
         refreshRate = 20;
         refreshInterval = (int) (1000.0 / refreshRate);
-        clocksPerInterval = (int) (cpuSpeed * refreshInterval);
     }
 
     /**
@@ -382,6 +909,46 @@ public class EmAppleII extends Em6502 implements Runnable {
         return cpuSpeed;
     }
 
+    /**
+     * Set CPU pacing
+     */
+    public void setPacing(Pacing value) {
+        pacing = value;
+    }
+
+    /**
+     * Get CPU pacing
+     */
+    public Pacing getPacing() {
+        return pacing;
+    }
+
+    /**
+     * Set disk acceleration, runs in warp while a disk drive motor is on
+     */
+    public void setDiskAccelerated(boolean value) {
+        isDiskAccelerated = value;
+    }
+
+    /**
+     * Get disk acceleration
+     */
+    public boolean isDiskAccelerated() {
+        return isDiskAccelerated;
+    }
+
+    /**
+     * Is a disk drive motor on
+     */
+    private boolean isDiskMotorOn() {
+        for (Peripheral peripheral : slots) {
+            if (peripheral instanceof DiskII disk && disk.isMotorOn()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get refresh rate
      */
@@ -389,6 +956,13 @@ public class EmAppleII extends Em6502 implements Runnable {
         return refreshRate;
     }
 
+    /**
+     * Get refresh interval in ms, emulated time run by an interval at real time pacing
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
     /**
      * Set debug mode
      */
@@ -485,6 +1059,109 @@ public class EmAppleII extends Em6502 implements Runnable {
         return statInfo.toString();
     }
 
+    /**
+     * A frame has been drawn, it is the time the display renders it
+     */
+    private void startVbl(long clock) {
+        scheduler.schedule(vblEventId, clock + CYCLES_PER_FRAME);
+
+        int[] lineModes = this.lineModes;
+        if (lineModes != null) {
+            Arrays.fill(lineModes, lineModesCount, VISIBLE_LINES, graphicsMode);
+        }
+
+        Consumer<Pacing> frameListener = this.frameListener;
+        if (frameListener != null) {
+            frameListener.accept(intervalPacing);
+        }
+
+        lineModesCount = 0;
+
+        Rewind rewind = this.rewind;
+        if (rewind != null) {
+            rewind.onFrame();
+        }
+    }
+
+    /**
+     * Records the graphics mode of each visible line, i.e. soft switches
+     * changed while the beam is drawing, for a display rendering them
+     */
+    public void setLineModesTracked(boolean value) {
+        lineModes = value ? new int[VISIBLE_LINES] : null;
+    }
+
+    /**
+     * Copies the graphics mode of each visible line of the frame just drawn,
+     * it is valid in a frame listener only
+     */
+    public void getLineModes(int[] modes) {
+        int[] lineModes = this.lineModes;
+        if (lineModes != null) {
+            System.arraycopy(lineModes, 0, modes, 0, VISIBLE_LINES);
+        } else {
+            Arrays.fill(modes, 0, VISIBLE_LINES, graphicsMode);
+        }
+    }
+
+    /**
+     * Lines the beam has passed keep the graphics mode before a change
+     */
+    private void trackLineModes(int[] lineModes) {
+        int cycle = (int) (clock % CYCLES_PER_FRAME);
+        int lines = cycle < VBL_START ? (cycle + CYCLES_PER_LINE - HBL_CYCLES) / CYCLES_PER_LINE : 0;
+        if (lines > lineModesCount) {
+            Arrays.fill(lineModes, lineModesCount, lines, graphicsMode);
+            lineModesCount = lines;
+        }
+    }
+
+    /**
+     * Sets what is called on the emulator thread at the end of each emulated frame,
+     * e.g. the display
+     *
+     * @param frameListener gets the pacing the frame ran at, null for none
+     */
+    public void setFrameListener(Consumer<Pacing> frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    /**
+     * Publishes the video memory written since the last call to the display,
+     * it is called at the end of each interval. Callers running
+     * {@link #executeInstructions(int)} on their own call it before a display refresh.
+     * The emulator must be paused or this must be called from its thread.
+     */
+    public void publishGraphicsDirty() {
+        for (int i = 0; i < GRAPHICS_DIRTY_WORDS; i++) {
+            long bits = graphicsWritten[i];
+            if (bits != 0) {
+                GRAPHICS_DIRTY.getAndBitwiseOrRelease(graphicsDirty, i, bits);
+                graphicsWritten[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Marks all the video memory to be redrawn
+     */
+    private void markGraphicsDirty() {
+        for (int i = 0; i < GRAPHICS_DIRTY_WORDS; i++) {
+            GRAPHICS_DIRTY.getAndBitwiseOrRelease(graphicsDirty, i, -1L);
+        }
+    }
+
+    /**
+     * Takes the published video memory blocks, it is called by the display thread
+     *
+     * @param dirty the blocks are or'ed into this, bit n is 0x80 bytes at n * 0x80
+     */
+    void takeGraphicsDirty(long[] dirty) {
+        for (int i = 0; i < GRAPHICS_DIRTY_WORDS; i++) {
+            dirty[i] |= (long) GRAPHICS_DIRTY.getAndSetAcquire(graphicsDirty, i, 0L);
+        }
+    }
+
     /**
      * Noise function
      * <p>
@@ -495,7 +1172,7 @@ public class EmAppleII extends Em6502 implements Runnable {
      * and sample according to what is being shown.
      */
     public int noise() {
-        return mem[clock & 0x3fff];
+        return physicalRead((int) clock & 0x3fff);
     }
 
     /**
@@ -505,11 +1182,15 @@ public class EmAppleII extends Em6502 implements Runnable {
      */
     @Override
     protected int memoryRead(int address) {
-        if ((address & 0xff00) == 0xc000) {
-            return ioRead(address);
+        byte[] page = readMemory[address >> 8];
+        if (page != null) {
+            return page[address & 0xff] & 0xff;
+        }
+        if (readPages[address >> 8] == PAGE_ZERO) {
+            return mem[address] & 0xff;
         }
 
-        return mem[address + memoryReadOffset[address >> 8]] & 0xff;
+        return ioRead(address);
     }
 
     /**
@@ -520,53 +1201,232 @@ public class EmAppleII extends Em6502 implements Runnable {
      */
     @Override
     protected void memoryWrite(int address, int value) {
-        if ((address & 0xff00) == 0xc000) {
+        int page = writePages[address >> 8];
+        if ((page & PAGE_FLAGS) == 0) {
+            int physical = page | (address & 0xff);
+            pages[page >> 8][address & 0xff] = (byte) value;
+            invalidateCode(physical);
+            dirtyPages[physical >> 14] |= 1L << (physical >> 8);
+        } else if (page == PAGE_ZERO) {
+            mem[address] = (byte) value;
+        } else if ((page & (PAGE_VIDEO | PAGE_SHARED)) != 0) {
+            int physical = (page & ~PAGE_FLAGS) | (address & 0xff);
+            writablePage(physical >> 8)[address & 0xff] = (byte) value;
+            invalidateCode(physical);
+            dirtyPages[physical >> 14] |= 1L << (physical >> 8);
+            if ((page & PAGE_VIDEO) != 0) {
+                graphicsWritten[address >> 13] |= 1L << (address >> 7);
+            }
+        } else if (page == PAGE_IO) {
             ioWrite(address, value);
+        }
+    }
+
+    @Override
+    protected int physicalAddress(int address) {
+        int page = readPages[address >> 8];
+        if (page == PAGE_IO) {
+            return -1;
+        }
+        if (page == PAGE_ZERO) {
+            return address;
+        }
+
+        return page | (address & 0xff);
+    }
+
+    /**
+     * Byte at a physical address, e.g. of the display pages
+     */
+    @Override
+    public final byte physicalRead(int physical) {
+        if (physical < MEM_PHYS_RAM1) {
+            return mem[physical];
+        }
+
+        return pages[physical >> 8][physical & 0xff];
+    }
+
+    /**
+     * Writes a byte at a physical address, not through the memory map, e.g. to place a program
+     */
+    public void physicalWrite(int physical, int value) {
+        if (physical < MEM_PHYS_RAM1) {
+            mem[physical] = (byte) value;
+            return;
+        }
+
+        writablePage(physical >> 8)[physical & 0xff] = (byte) value;
+        invalidateCode(physical);
+        dirtyPages[physical >> 14] |= 1L << (physical >> 8);
+    }
+
+    @Override
+    protected int physicalSize() {
+        return MEM_END;
+    }
+
+    /**
+     * Copies a physical page out, e.g. to a rewind checkpoint
+     */
+    void readPage(int page, byte[] to, int offset) {
+        if (page < MEM_PHYS_RAM1 >> 8) {
+            System.arraycopy(mem, page << 8, to, offset, PAGE_SIZE);
         } else {
-            mem[address + memoryWriteOffset[address >> 8]] = (byte) value;
-            graphicsDirty[address >> 7] = true;
+            System.arraycopy(pages[page], 0, to, offset, PAGE_SIZE);
         }
     }
 
     /**
-     * Update memory maps
+     * Copies a physical page in, a shared page stays so if it has the contents already.
+     * The page is not marked dirty and translated code is not dropped, it is up to the caller.
      */
-    private void updateMainMemoryMap() {
-        int ramReadOffset, textReadOffset, hiresReadOffset;
-        int ramWriteOffset, textWriteOffset, hiresWriteOffset;
-        boolean isPage2 = ((graphicsMode & GR_PAGE2) != 0);
-        boolean is80STORE = ((graphicsMode & GR_80STORE) != 0);
-        boolean isHires = ((graphicsMode & GR_HIRES) != 0);
+    void writePage(int page, byte[] from, int offset) {
+        if (page < MEM_PHYS_RAM1 >> 8) {
+            System.arraycopy(from, offset, mem, page << 8, PAGE_SIZE);
+        } else if (Arrays.mismatch(pages[page], 0, PAGE_SIZE, from, offset, offset + PAGE_SIZE) >= 0) {
+            System.arraycopy(from, offset, writablePage(page), 0, PAGE_SIZE);
+        }
+    }
 
-        textReadOffset = hiresReadOffset = ramReadOffset = isAuxRead ?
-                (MEM_AUX_RAM1 - MEM_PHYS_RAM1) : (MEM_MAIN_RAM1 - MEM_PHYS_RAM1);
-        textWriteOffset = hiresWriteOffset = ramWriteOffset = isAuxWrite ?
-                (MEM_AUX_RAM1 - MEM_PHYS_RAM1) : (MEM_MAIN_RAM1 - MEM_PHYS_RAM1);
+    /**
+     * Installs an array as a shared page, it is copied on the first write.
+     * The page tables are up to the caller.
+     */
+    private void sharePage(int page, byte[] array) {
+        pages[page] = array;
+        sharedPages[page >> 6] |= 1L << page;
+    }
 
-        if (is80STORE) {
-            textWriteOffset = textReadOffset = isPage2 ? (MEM_AUX_TEXT - MEM_PHYS_TEXT) :
-                    (MEM_MAIN_TEXT - MEM_PHYS_TEXT);
+    /**
+     * The array of a physical page to write to, a shared one is copied first (write fault)
+     */
+    private byte[] writablePage(int page) {
+        if ((sharedPages[page >> 6] & (1L << page)) != 0) {
+            pages[page] = pages[page].clone();
+            sharedPages[page >> 6] &= ~(1L << page);
+            updatePageTables();
+        }
+        return pages[page];
+    }
 
-            if (isHires) {
-                hiresWriteOffset = hiresReadOffset = textReadOffset;
+    /**
+     * Shares the memory pages of another machine, both sides copy a page on their first write.
+     * The other machine must be paused or this must be called from its thread.
+     */
+    private void sharePages(EmAppleII from) {
+        for (int page = MEM_PHYS_RAM1 >> 8; page < pages.length; page++) {
+            pages[page] = from.pages[page];
         }
+        Arrays.fill(sharedPages, -1);
+        Arrays.fill(from.sharedPages, -1);
+        updatePageTables();
+        from.updatePageTables();
+    }
+
+    /**
+     * Page arrays have been replaced or shared: sets {@link #PAGE_SHARED}
+     * of the write page table from {@link #sharedPages} and the arrays of the read one
+     */
+    private void updatePageTables() {
+        for (int i = 0; i < writePages.length; i++) {
+            int page = writePages[i];
+            if ((page & (PAGE_IO | PAGE_READ_ONLY | PAGE_ZERO)) == 0) {
+                writePages[i] = sharedPage(page & ~PAGE_FLAGS) | (page & ~PAGE_SHARED);
+            }
+            mapReadPage(i, readPages[i]);
         }
+    }
+
+    /**
+     * Sets an entry of the read page table
+     */
+    private void mapReadPage(int page, int entry) {
+        readPages[page] = entry;
+        readMemory[page] = (entry & PAGE_FLAGS) == 0 ? pages[entry >> 8] : null;
+    }
+
+    /**
+     * @return {@link #PAGE_SHARED} if the physical page is shared
+     */
+    private int sharedPage(int physical) {
+        int page = physical >> 8;
+        return (sharedPages[page >> 6] & (1L << page)) != 0 ? PAGE_SHARED : 0;
+    }
 
-        memoryReadOffset[0x02] = memoryReadOffset[0x03] = ramReadOffset;
-        memoryWriteOffset[0x02] = memoryWriteOffset[0x03] = ramWriteOffset;
-        memoryReadOffset[0x04] = memoryReadOffset[0x05] = memoryReadOffset[0x06] = memoryReadOffset[0x07] = textReadOffset;
-        memoryWriteOffset[0x04] = memoryWriteOffset[0x05] = memoryWriteOffset[0x06] = memoryWriteOffset[0x07] = textWriteOffset;
-        for (int offset = 0x08; offset < 0x20; offset++) {
-            memoryReadOffset[offset] = ramReadOffset;
-            memoryWriteOffset[offset] = ramWriteOffset;
+    /**
+     * Maps pages to physical memory at an offset from their address
+     */
+    private void mapPages(int from, int to, int readOffset, int writeOffset) {
+        for (int page = from; page < to; page++) {
+            int write = (page << 8) + writeOffset;
+            mapReadPage(page, (page << 8) + readOffset);
+            writePages[page] = write | (isVideoPage(page) ? PAGE_VIDEO : 0) | sharedPage(write);
         }
-        for (int offset = 0x20; offset < 0x40; offset++) {
-            memoryReadOffset[offset] = hiresReadOffset;
-            memoryWriteOffset[offset] = hiresWriteOffset;
+    }
+
+    /**
+     * Text, lores and hires pages 1 and 2
+     */
+    private static boolean isVideoPage(int page) {
+        return (page >= 0x04 && page < 0x0c) || (page >= 0x20 && page < 0x60);
+    }
+
+    /**
+     * Main memory offsets of pages 0x02-0xbf, selected by RAMRD and RAMWRT
+     */
+    private int ramReadOffset() {
+        return isAuxRead ? (MEM_AUX_RAM1 - MEM_PHYS_RAM1) : (MEM_MAIN_RAM1 - MEM_PHYS_RAM1);
+    }
+
+    private int ramWriteOffset() {
+        return isAuxWrite ? (MEM_AUX_RAM1 - MEM_PHYS_RAM1) : (MEM_MAIN_RAM1 - MEM_PHYS_RAM1);
+    }
+
+    /**
+     * Offset of the display pages when 80STORE selects them by PAGE2
+     */
+    private int page2Offset() {
+        return ((graphicsMode & GR_PAGE2) != 0) ? (MEM_AUX_TEXT - MEM_PHYS_TEXT) : (MEM_MAIN_TEXT - MEM_PHYS_TEXT);
+    }
+
+    /**
+     * Update memory maps
+     */
+    private void updateMainMemoryMap() {
+        int ramReadOffset = ramReadOffset();
+        int ramWriteOffset = ramWriteOffset();
+
+        mapPages(0x02, 0x04, ramReadOffset, ramWriteOffset);
+        updateTextMemoryMap();
+        mapPages(0x08, 0x20, ramReadOffset, ramWriteOffset);
+        updateHiresMemoryMap();
+        mapPages(0x40, 0xc0, ramReadOffset, ramWriteOffset);
+
+        memoryMapChanged();
+    }
+
+    /**
+     * Text page 1, 0x0400-0x07ff
+     */
+    private void updateTextMemoryMap() {
+        if ((graphicsMode & GR_80STORE) != 0) {
+            int offset = page2Offset();
+            mapPages(0x04, 0x08, offset, offset);
+        } else {
+            mapPages(0x04, 0x08, ramReadOffset(), ramWriteOffset());
         }
-        for (int offset = 0x40; offset < 0xc0; offset++) {
-            memoryReadOffset[offset] = ramReadOffset;
-            memoryWriteOffset[offset] = ramWriteOffset;
+    }
+
+    /**
+     * Hires page 1, 0x2000-0x3fff
+     */
+    private void updateHiresMemoryMap() {
+        if ((graphicsMode & (GR_80STORE | GR_HIRES)) == (GR_80STORE | GR_HIRES)) {
+            int offset = page2Offset();
+            mapPages(0x20, 0x40, offset, offset);
+        } else {
+            mapPages(0x20, 0x40, ramReadOffset(), ramWriteOffset());
         }
     }
 
@@ -579,21 +1439,31 @@ public class EmAppleII extends Em6502 implements Runnable {
             romOffset = (MEM_ROM_EXTERNAL - MEM_PHYS_IO);
         }
 
-        for (int offset = 0xc1; offset < 0xd0; offset++) {
-            memoryReadOffset[offset] = romOffset;
+        for (int page = 0xc1; page < 0xd0; page++) {
+            mapReadPage(page, (page << 8) + romOffset);
         }
 
         if (isRomC3External) {
-            memoryReadOffset[0xc3] = (MEM_ROM_EXTERNAL - MEM_PHYS_IO);
+            mapReadPage(0xc3, 0xc300 + (MEM_ROM_EXTERNAL - MEM_PHYS_IO));
         } else {
-            memoryReadOffset[0xc3] = (MEM_ROM_INTERNAL - MEM_PHYS_IO);
-    }
+            mapReadPage(0xc3, 0xc300 + (MEM_ROM_INTERNAL - MEM_PHYS_IO));
+        }
+
+        memoryMapChanged();
     }
 
     private void initIOMemoryMap() {
-        for (int offset = 0xc1; offset < 0xd0; offset++) {
-            memoryWriteOffset[offset] = (MEM_WASTE - MEM_PHYS_IO);
-    }
+        // zero page and stack, aux is swapped in physically
+        mapReadPage(0x00, PAGE_ZERO);
+        mapReadPage(0x01, PAGE_ZERO);
+        writePages[0x00] = writePages[0x01] = PAGE_ZERO;
+        mapPages(0x100, 0x101, 0, 0);
+
+        mapReadPage(0xc0, PAGE_IO);
+        writePages[0xc0] = PAGE_IO;
+        for (int page = 0xc1; page < 0xd0; page++) {
+            writePages[page] = PAGE_READ_ONLY;
+        }
     }
 
     private void updateLCMemoryMap() {
@@ -612,8 +1482,7 @@ public class EmAppleII extends Em6502 implements Runnable {
         }
 
         if (!isLcWriteEnable) {
-            lcWriteOffset = (MEM_WASTE - MEM_PHYS_ROM_LOW);
-            lcWriteOffsetHigh = (MEM_WASTE - MEM_PHYS_ROM_HIGH);
+            lcWriteOffset = lcWriteOffsetHigh = -1;
         } else if (isAuxZeroPage) {
             lcWriteOffset = isLcBank2 ? (MEM_AUX_LC2 - MEM_PHYS_ROM_LOW) : (MEM_AUX_LC1 - MEM_PHYS_ROM_LOW);
             lcWriteOffsetHigh = (MEM_AUX_LC_HIGH - MEM_PHYS_ROM_HIGH);
@@ -622,14 +1491,13 @@ public class EmAppleII extends Em6502 implements Runnable {
             lcWriteOffsetHigh = (MEM_MAIN_LC_HIGH - MEM_PHYS_ROM_HIGH);
         }
 
-        for (int offset = 0xd0; offset < 0xe0; offset++) {
-            memoryReadOffset[offset] = lcReadOffset;
-            memoryWriteOffset[offset] = lcWriteOffset;
-        }
-        for (int offset = 0xe0; offset < 0x100; offset++) {
-            memoryReadOffset[offset] = lcReadOffsetHigh;
-            memoryWriteOffset[offset] = lcWriteOffsetHigh;
+        mapPages(0xd0, 0xe0, lcReadOffset, lcWriteOffset);
+        mapPages(0xe0, 0x100, lcReadOffsetHigh, lcWriteOffsetHigh);
+        if (!isLcWriteEnable) {
+            Arrays.fill(writePages, 0xd0, 0x100, PAGE_READ_ONLY);
         }
+
+        memoryMapChanged();
     }
 
     void initMemoryMap() {
@@ -640,6 +1508,253 @@ public class EmAppleII extends Em6502 implements Runnable {
         updateLCMemoryMap();
     }
 
+    /*
+     * Soft switches, a switch which does not change the state does not touch the memory map
+     */
+
+    /**
+     * Display switches, 80STORE, PAGE2 and HIRES remap only the display pages they select
+     */
+    private void setGraphicsMode(int flag, boolean value) {
+        int mode = value ? (graphicsMode | flag) : (graphicsMode & ~flag);
+        if (mode == graphicsMode) {
+            return;
+        }
+        int[] lineModes = this.lineModes;
+        if (lineModes != null) {
+            trackLineModes(lineModes);
+        }
+        graphicsMode = mode;
+
+        if (flag == GR_80STORE || ((flag == GR_PAGE2 || flag == GR_HIRES) && (mode & GR_80STORE) != 0)) {
+            if (flag != GR_HIRES) {
+                updateTextMemoryMap();
+            }
+            if (flag == GR_HIRES || (mode & GR_HIRES) != 0) {
+                updateHiresMemoryMap();
+            }
+            memoryMapChanged();
+        }
+    }
+
+    private void setAuxRead(boolean value) {
+        if (isAuxRead != value) {
+            isAuxRead = value;
+            updateMainMemoryMap();
+        }
+    }
+
+    private void setAuxWrite(boolean value) {
+        if (isAuxWrite != value) {
+            isAuxWrite = value;
+            updateMainMemoryMap();
+        }
+    }
+
+    private void setRomInternal(boolean value) {
+        if (isRomInternal != value) {
+            isRomInternal = value;
+            updateIOMemoryMap();
+        }
+    }
+
+    private void setRomC3External(boolean value) {
+        if (isRomC3External != value) {
+            isRomC3External = value;
+            updateIOMemoryMap();
+        }
+    }
+
+    private void setAuxZeroPage(boolean value) {
+        if (isAuxZeroPage == value) {
+            return;
+        }
+
+        if (value) {
+            // Physically get aux zero page
+            swapZeroPage(MEM_MAIN_ZP, MEM_AUX_ZP);
+        } else {
+            // Physically get main zero page
+            swapZeroPage(MEM_AUX_ZP, MEM_MAIN_ZP);
+        }
+        isAuxZeroPage = value;
+        updateLCMemoryMap();
+    }
+
+    /**
+     * Saves the zero page and stack to physical memory and gets the other ones
+     */
+    private void swapZeroPage(int save, int load) {
+        for (int page = 0; page < 2; page++) {
+            writePage((save >> 8) + page, mem, page << 8);
+            readPage((load >> 8) + page, mem, page << 8);
+        }
+        dirtyPages[save >> 14] |= 3L << (save >> 8);
+    }
+
+    /**
+     * Language card switches 0x80-0x8f, bit 3 selects bank 1,
+     * bits 0-1 select reading RAM (0, 3) and writing RAM (1, 3)
+     */
+    private void switchLanguageCard(int address) {
+        boolean isBank2 = (address & 0x08) == 0;
+        boolean isReadEnable = ((address + 1) & 0x02) == 0;
+        boolean isWriteEnable = (address & 0x01) != 0;
+
+        if (isLcBank2 != isBank2 || isLcReadEnable != isReadEnable || isLcWriteEnable != isWriteEnable) {
+            isLcBank2 = isBank2;
+            isLcReadEnable = isReadEnable;
+            isLcWriteEnable = isWriteEnable;
+            updateLCMemoryMap();
+        }
+    }
+
+    private void toggleSpeaker() {
+        speakerFlips[speakerFlipsPointer] = clock;
+        speakerFlipsPointer = (speakerFlipsPointer + 1) & SPEAKER_FLIPS_MASK;
+    }
+
+    /**
+     * Switch status, bit 7 is the switch and bits 0-6 the keyboard latch
+     */
+    private int status(boolean value) {
+        return (keyboardLatch & 0x7f) | (value ? 0x80 : 0x00);
+    }
+
+    /**
+     * Registers a switch which acts on both reads and writes, reads return the floating bus
+     */
+    private void setSoftSwitch(int from, int to, IntConsumer action) {
+        for (int address = from; address < to; address++) {
+            ioReadHandlers[address] = a -> {
+                action.accept(a);
+                return noise();
+            };
+            ioWriteHandlers[address] = (a, v) -> action.accept(a);
+        }
+    }
+
+    /**
+     * Registers the Apple IIe I/O, the slots are registered by {@link #setPeripheral}
+     */
+    private void initIoHandlers() {
+        setSoftSwitch(0x00, 0x100, a -> {});
+
+        // Keyboard data, memory and display switches
+        for (int address = 0x00; address < 0x10; address++) {
+            ioReadHandlers[address] = a -> keyboardLatch;
+        }
+        ioWriteHandlers[0x00] = (a, v) -> setGraphicsMode(GR_80STORE, false);
+        ioWriteHandlers[0x01] = (a, v) -> setGraphicsMode(GR_80STORE, true);
+        ioWriteHandlers[0x02] = (a, v) -> setAuxRead(false);
+        ioWriteHandlers[0x03] = (a, v) -> setAuxRead(true);
+        ioWriteHandlers[0x04] = (a, v) -> setAuxWrite(false);
+        ioWriteHandlers[0x05] = (a, v) -> setAuxWrite(true);
+        ioWriteHandlers[0x06] = (a, v) -> setRomInternal(false);
+        ioWriteHandlers[0x07] = (a, v) -> setRomInternal(true);
+        ioWriteHandlers[0x08] = (a, v) -> setAuxZeroPage(false);
+        ioWriteHandlers[0x09] = (a, v) -> setAuxZeroPage(true);
+        ioWriteHandlers[0x0a] = (a, v) -> setRomC3External(false);
+        ioWriteHandlers[0x0b] = (a, v) -> setRomC3External(true);
+        ioWriteHandlers[0x0c] = (a, v) -> setGraphicsMode(GR_80CHAR, false);
+        ioWriteHandlers[0x0d] = (a, v) -> setGraphicsMode(GR_80CHAR, true);
+        ioWriteHandlers[0x0e] = (a, v) -> setGraphicsMode(GR_ALTCHAR, false);
+        ioWriteHandlers[0x0f] = (a, v) -> setGraphicsMode(GR_ALTCHAR, true);
+
+        // Keyboard strobe and switch status
+        for (int address = 0x10; address < 0x20; address++) {
+            ioWriteHandlers[address] = (a, v) -> keyboardLatch &= 0x7f;
+        }
+        ioReadHandlers[0x10] = a -> keyboardLatch &= 0x7f;
+        ioReadHandlers[0x11] = a -> status(isLcBank2);
+        ioReadHandlers[0x12] = a -> status(isLcReadEnable);
+        ioReadHandlers[0x13] = a -> status(isAuxRead);
+        ioReadHandlers[0x14] = a -> status(isAuxWrite);
+        ioReadHandlers[0x15] = a -> status(isRomInternal);
+        ioReadHandlers[0x16] = a -> status(isAuxZeroPage);
+        ioReadHandlers[0x17] = a -> status(isRomC3External);
+        ioReadHandlers[0x18] = a -> status((graphicsMode & GR_80STORE) != 0);
+        // not in vertical blank
+        ioReadHandlers[0x19] = a -> status(clock % CYCLES_PER_FRAME < VBL_START);
+        ioReadHandlers[0x1a] = a -> status((graphicsMode & GR_TEXT) != 0);
+        ioReadHandlers[0x1b] = a -> status((graphicsMode & GR_MIXMODE) != 0);
+        ioReadHandlers[0x1c] = a -> status((graphicsMode & GR_PAGE2) != 0);
+        ioReadHandlers[0x1d] = a -> status((graphicsMode & GR_HIRES) != 0);
+        ioReadHandlers[0x1e] = a -> status((graphicsMode & GR_ALTCHAR) != 0);
+        ioReadHandlers[0x1f] = a -> status((graphicsMode & GR_80CHAR) != 0);
+
+        // Cassette output at 0x20-0x2f, speaker
+        setSoftSwitch(0x30, 0x40, a -> toggleSpeaker());
+
+        // Game strobe at 0x40-0x4f, display modes, annunciators at 0x58-0x5d
+        setSoftSwitch(0x50, 0x51, a -> setGraphicsMode(GR_TEXT, false));
+        setSoftSwitch(0x51, 0x52, a -> setGraphicsMode(GR_TEXT, true));
+        setSoftSwitch(0x52, 0x53, a -> setGraphicsMode(GR_MIXMODE, false));
+        setSoftSwitch(0x53, 0x54, a -> setGraphicsMode(GR_MIXMODE, true));
+        setSoftSwitch(0x54, 0x55, a -> setGraphicsMode(GR_PAGE2, false));
+        setSoftSwitch(0x55, 0x56, a -> setGraphicsMode(GR_PAGE2, true));
+        setSoftSwitch(0x56, 0x57, a -> setGraphicsMode(GR_HIRES, false));
+        setSoftSwitch(0x57, 0x58, a -> setGraphicsMode(GR_HIRES, true));
+        setSoftSwitch(0x5e, 0x5f, a -> setGraphicsMode(GR_DHIRES, true));
+        setSoftSwitch(0x5f, 0x60, a -> setGraphicsMode(GR_DHIRES, false));
+
+        // Cassette input, buttons and paddles, writes are ignored
+        for (int address = 0x60; address < 0x70; address += 0x08) {
+            ioReadHandlers[address] = a -> paddle.getButtonRegister(3);
+            ioReadHandlers[address + 1] = a -> paddle.getButtonRegister(0);
+            ioReadHandlers[address + 2] = a -> paddle.getButtonRegister(1);
+            ioReadHandlers[address + 3] = a -> paddle.getButtonRegister(2);
+            ioReadHandlers[address + 4] = a -> paddle.getPaddleRegister(0);
+            ioReadHandlers[address + 5] = a -> paddle.getPaddleRegister(1);
+            ioReadHandlers[address + 6] = a -> paddle.getPaddleRegister(2);
+            ioReadHandlers[address + 7] = a -> paddle.getPaddleRegister(3);
+        }
+
+        // Paddle trigger
+        setSoftSwitch(0x70, 0x80, a -> paddle.triggerRegister());
+
+        // Language card
+        setSoftSwitch(0x80, 0x90, this::switchLanguageCard);
+    }
+
+    /**
+     * Registers the read handler of an I/O address, e.g. for another machine model
+     * or a device which is not a slot peripheral. Handlers are per machine,
+     * a fork gets the Apple IIe ones and its peripherals'.
+     *
+     * @param address 0x00-0xff, offset from 0xc000
+     */
+    public void setIoReadHandler(int address, IoReadHandler handler) {
+        ioReadHandlers[address & 0xff] = handler;
+    }
+
+    /**
+     * Registers the write handler of an I/O address
+     *
+     * @param address 0x00-0xff, offset from 0xc000
+     */
+    public void setIoWriteHandler(int address, IoWriteHandler handler) {
+        ioWriteHandlers[address & 0xff] = handler;
+    }
+
+    /**
+     * The current read handler of an I/O address, e.g. to chain it
+     *
+     * @param address 0x00-0xff, offset from 0xc000
+     */
+    public IoReadHandler getIoReadHandler(int address) {
+        return ioReadHandlers[address & 0xff];
+    }
+
+    /**
+     * The current write handler of an I/O address
+     *
+     * @param address 0x00-0xff, offset from 0xc000
+     */
+    public IoWriteHandler getIoWriteHandler(int address) {
+        return ioWriteHandlers[address & 0xff];
+    }
+
     /**
      * Apple I/O reads
      *
@@ -647,289 +1762,7 @@ public class EmAppleII extends Em6502 implements Runnable {
      */
     private int ioRead(int address) {
         address &= 0xff;
-
-        if (address >= 0x90) {
-            return slots[(address & 0x70) >> 4].ioRead(address);
-        }
-
-        switch (address) {
-            case 0x00:
-            case 0x01:
-            case 0x02:
-            case 0x03:
-            case 0x04:
-            case 0x05:
-            case 0x06:
-            case 0x07:
-            case 0x08:
-            case 0x09:
-            case 0x0a:
-            case 0x0b:
-            case 0x0c:
-            case 0x0d:
-            case 0x0e:
-            case 0x0f:
-                // Keyboard data
-//logger.log(Level.TRACE, "io: " + address + ": " + keyboardLatch);
-                return keyboardLatch;
-
-            case 0x10:
-                // Keyboard strobe
-                keyboardLatch &= 0x7f;
-                return keyboardLatch;
-            case 0x11:
-                // Reading from LC Bank 2?
-                return (keyboardLatch & 0x7f) | (isLcBank2 ? 0x80 : 0x00);
-            case 0x12:
-                // Reading from LC?
-                return (keyboardLatch & 0x7f) | (isLcReadEnable ? 0x80 : 0x00);
-            case 0x13:
-                // Reading aux memory?
-                return (keyboardLatch & 0x7f) | (isAuxRead ? 0x80 : 0x00);
-            case 0x14:
-                // Writing aux memory?
-                return (keyboardLatch & 0x7f) | (isAuxWrite ? 0x80 : 0x00);
-            case 0x15:
-                // Using internal slot ROM?
-                return (keyboardLatch & 0x7f) | (isRomInternal ? 0x80 : 0x00);
-            case 0x16:
-                // Using slot zero page+stack+LC?
-                return (keyboardLatch & 0x7f) | (isAuxZeroPage ? 0x80 : 0x00);
-            case 0x17:
-                // Using external slot 3 ROM?
-                return (keyboardLatch & 0x7f) | (isRomC3External ? 0x80 : 0x00);
-            case 0x18:
-                // 80STORE?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_80STORE) != 0) ? 0x80 : 0x00);
-            case 0x19:
-                // VBL Signal low?
-                isVideoVBL = !isVideoVBL;
-                return (keyboardLatch & 0x7f) | (isVideoVBL ? 0x80 : 0x00);
-            case 0x1a:
-                // Using text mode?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_TEXT) != 0) ? 0x80 : 0x00);
-            case 0x1b:
-                // Using mixed mode?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_MIXMODE) != 0) ? 0x80 : 0x00);
-            case 0x1c:
-                // Using page 2?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_PAGE2) != 0) ? 0x80 : 0x00);
-            case 0x1d:
-                // Using hires?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_HIRES) != 0) ? 0x80 : 0x00);
-            case 0x1e:
-                // Using alt charset?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_ALTCHAR) != 0) ? 0x80 : 0x00);
-            case 0x1f:
-                // Using 80-column display mode?
-                return (keyboardLatch & 0x7f) | (((graphicsMode & GR_80CHAR) != 0) ? 0x80 : 0x00);
-
-            case 0x20:
-            case 0x21:
-            case 0x22:
-            case 0x23:
-            case 0x24:
-            case 0x25:
-            case 0x26:
-            case 0x27:
-            case 0x28:
-            case 0x29:
-            case 0x2a:
-            case 0x2b:
-            case 0x2c:
-            case 0x2d:
-            case 0x2e:
-            case 0x2f:
-                // Cassette output
-                break;
-
-            case 0x30:
-            case 0x31:
-            case 0x32:
-            case 0x33:
-            case 0x34:
-            case 0x35:
-            case 0x36:
-            case 0x37:
-            case 0x38:
-            case 0x39:
-            case 0x3a:
-            case 0x3b:
-            case 0x3c:
-            case 0x3d:
-            case 0x3e:
-            case 0x3f:
-                // Speaker
-                speakerFlips[speakerFlipsPointer] = clock;
-                speakerFlipsPointer = (speakerFlipsPointer + 1) & SPEAKER_FLIPS_MASK;
-                break;
-
-            case 0x40:
-            case 0x41:
-            case 0x42:
-            case 0x43:
-            case 0x44:
-            case 0x45:
-            case 0x46:
-            case 0x47:
-            case 0x48:
-            case 0x49:
-            case 0x4a:
-            case 0x4b:
-            case 0x4c:
-            case 0x4d:
-            case 0x4e:
-            case 0x4f:
-                // Game strobe
-                break;
-
-            case 0x50:
-                graphicsMode &= ~GR_TEXT;
-                break;
-            case 0x51:
-                graphicsMode |= GR_TEXT;
-                break;
-            case 0x52:
-                graphicsMode &= ~GR_MIXMODE;
-                break;
-            case 0x53:
-                graphicsMode |= GR_MIXMODE;
-                break;
-            case 0x54:
-                graphicsMode &= ~GR_PAGE2;
-                updateMainMemoryMap();
-                break;
-            case 0x55:
-                graphicsMode |= GR_PAGE2;
-                updateMainMemoryMap();
-                break;
-            case 0x56:
-                graphicsMode &= ~GR_HIRES;
-                updateMainMemoryMap();
-                break;
-            case 0x57:
-                graphicsMode |= GR_HIRES;
-                updateMainMemoryMap();
-                break;
-            case 0x58:
-            case 0x59:
-            case 0x5a:
-            case 0x5b:
-            case 0x5c:
-            case 0x5d:
-                // Annunciators
-                break;
-            case 0x5e:
-                graphicsMode |= GR_DHIRES;
-                break;
-            case 0x5f:
-                graphicsMode &= ~GR_DHIRES;
-                break;
-
-            case 0x60:
-            case 0x68:
-                // (Also cassette input)
-                return paddle.getButtonRegister(3);
-            case 0x61:
-            case 0x69:
-                return paddle.getButtonRegister(0);
-            case 0x62:
-            case 0x6a:
-                return paddle.getButtonRegister(1);
-            case 0x63:
-            case 0x6b:
-                return paddle.getButtonRegister(2);
-            case 0x64:
-            case 0x6c:
-                return paddle.getPaddleRegister(0);
-            case 0x65:
-            case 0x6d:
-                return paddle.getPaddleRegister(1);
-            case 0x66:
-            case 0x6e:
-                return paddle.getPaddleRegister(2);
-            case 0x67:
-            case 0x6f:
-                return paddle.getPaddleRegister(3);
-
-            case 0x70:
-            case 0x71:
-            case 0x72:
-            case 0x73:
-            case 0x74:
-            case 0x75:
-            case 0x76:
-            case 0x77:
-            case 0x78:
-            case 0x79:
-            case 0x7a:
-            case 0x7b:
-            case 0x7c:
-            case 0x7d:
-            case 0x7e:
-            case 0x7f:
-                paddle.triggerRegister();
-                break;
-
-            case 0x80:
-            case 0x84:
-                isLcBank2 = true;
-                isLcReadEnable = true;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x81:
-            case 0x85:
-                isLcBank2 = true;
-                isLcReadEnable = false;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-            case 0x82:
-            case 0x86:
-                isLcBank2 = true;
-                isLcReadEnable = false;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x83:
-            case 0x87:
-                isLcBank2 = true;
-                isLcReadEnable = true;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-            case 0x88:
-            case 0x8c:
-                isLcBank2 = false;
-                isLcReadEnable = true;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x89:
-            case 0x8d:
-                isLcBank2 = false;
-                isLcReadEnable = false;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-            case 0x8a:
-            case 0x8e:
-                isLcBank2 = false;
-                isLcReadEnable = false;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x8b:
-            case 0x8f:
-                isLcBank2 = false;
-                isLcReadEnable = true;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-        }
-
-        return noise();
+        return ioReadHandlers[address].ioRead(address);
     }
 
     /**
@@ -940,318 +1773,64 @@ public class EmAppleII extends Em6502 implements Runnable {
      */
     private void ioWrite(int address, int value) {
         address &= 0xff;
+        ioWriteHandlers[address].ioWrite(address, value);
+    }
 
-        if (address >= 0x90) {
-            slots[(address & 0x70) >> 4].ioWrite(address, value);
-            return;
+    /**
+     * Runs on the caller's thread, without pacing or sound, for a headless machine.
+     * Inputs are applied at the interval boundaries {@link #run()} has at real time pacing.
+     * The emulator must be paused.
+     *
+     * @param clocks at least this many clocks are run
+     */
+    public void runClocks(long clocks) {
+        long end = clock + clocks;
+        intervalPacing = Pacing.REALTIME;
+        while (clock < end) {
+            applyInputs();
+            checkInterrupts();
+
+            int clocksNeeded = (int) Math.min(Pacing.REALTIME.getClocksPerInterval(cpuSpeed, refreshInterval), end - clock);
+            while (clocksNeeded > 0) {
+                clocksNeeded -= executeInstructions(1 + (clocksNeeded >> 3));
+            }
+            publishGraphicsDirty();
         }
+    }
 
-        switch (address) {
-            case 0x00:
-                // 80STORE off
-                graphicsMode &= ~GR_80STORE;
-                updateMainMemoryMap();
-                return;
-            case 0x01:
-                // 80STORE on
-                graphicsMode |= GR_80STORE;
-                updateMainMemoryMap();
-                return;
-            case 0x02:
-                // Read aux mem off
-                isAuxRead = false;
-                updateMainMemoryMap();
-                return;
-            case 0x03:
-                // Read aux mem on
-                isAuxRead = true;
-                updateMainMemoryMap();
-                return;
-            case 0x04:
-                // Write aux mem off
-                isAuxWrite = false;
-                updateMainMemoryMap();
-                return;
-            case 0x05:
-                // Write aux mem on
-                isAuxWrite = true;
-                updateMainMemoryMap();
-                return;
-            case 0x06:
-                // Do not use internal ROM
-                isRomInternal = false;
-                updateIOMemoryMap();
-                return;
-            case 0x07:
-                // Use internal ROM
-                isRomInternal = true;
-                updateIOMemoryMap();
-                return;
-            case 0x08:
-                if (isAuxZeroPage) {
-                    // Physically get main zero page
-                    System.arraycopy(mem, MEM_PHYS_ZP, mem, MEM_AUX_ZP, 0x200);
-                    System.arraycopy(mem, MEM_MAIN_ZP, mem, MEM_PHYS_ZP, 0x200);
-                }
-                // Aux zero page off
-                isAuxZeroPage = false;
-                updateLCMemoryMap();
-                return;
-            case 0x09:
-                if (!isAuxZeroPage) {
-                    // Physically get aux zero page
-                    System.arraycopy(mem, MEM_PHYS_ZP, mem, MEM_MAIN_ZP, 0x200);
-                    System.arraycopy(mem, MEM_AUX_ZP, mem, MEM_PHYS_ZP, 0x200);
-                }
-                // Aux zero page on
-                isAuxZeroPage = true;
-                updateLCMemoryMap();
-                return;
-            case 0x0a:
-                // Do not use external slot 3 ROM
-                isRomC3External = false;
-                updateIOMemoryMap();
-                return;
-            case 0x0b:
-                // Use external slot 3 ROM
-                isRomC3External = true;
-                updateIOMemoryMap();
-                return;
-            case 0x0c:
-                // 80c off
-                graphicsMode &= ~GR_80CHAR;
-                return;
-            case 0x0d:
-                // 80c on
-                graphicsMode |= GR_80CHAR;
-                return;
-            case 0x0e:
-                // Alt charset off
-                graphicsMode &= ~GR_ALTCHAR;
-                return;
-            case 0x0f:
-                // Alt charset on
-                graphicsMode |= GR_ALTCHAR;
-                return;
-
-            case 0x10:
-            case 0x11:
-            case 0x12:
-            case 0x13:
-            case 0x14:
-            case 0x15:
-            case 0x16:
-            case 0x17:
-            case 0x18:
-            case 0x19:
-            case 0x1a:
-            case 0x1b:
-            case 0x1c:
-            case 0x1d:
-            case 0x1e:
-            case 0x1f:
-                // Keyboard strobe
-                keyboardLatch &= 0x7f;
-//logger.log(Level.TRACE, "io: " + address + ": " + keyboardLatch);
-                return;
-
-            case 0x20:
-            case 0x21:
-            case 0x22:
-            case 0x23:
-            case 0x24:
-            case 0x25:
-            case 0x26:
-            case 0x27:
-            case 0x28:
-            case 0x29:
-            case 0x2a:
-            case 0x2b:
-            case 0x2c:
-            case 0x2d:
-            case 0x2e:
-            case 0x2f:
-                // Cassette output
-                return;
-
-            case 0x30:
-            case 0x31:
-            case 0x32:
-            case 0x33:
-            case 0x34:
-            case 0x35:
-            case 0x36:
-            case 0x37:
-            case 0x38:
-            case 0x39:
-            case 0x3a:
-            case 0x3b:
-            case 0x3c:
-            case 0x3d:
-            case 0x3e:
-            case 0x3f:
-                // Speaker
-                speakerFlips[speakerFlipsPointer] = clock;
-                speakerFlipsPointer = (speakerFlipsPointer + 1) & SPEAKER_FLIPS_MASK;
-                return;
-
-            case 0x40:
-            case 0x41:
-            case 0x42:
-            case 0x43:
-            case 0x44:
-            case 0x45:
-            case 0x46:
-            case 0x47:
-            case 0x48:
-            case 0x49:
-            case 0x4a:
-            case 0x4b:
-            case 0x4c:
-            case 0x4d:
-            case 0x4e:
-            case 0x4f:
-                // Game strobe
-                return;
-
-            case 0x50:
-                graphicsMode &= ~GR_TEXT;
-                return;
-            case 0x51:
-                graphicsMode |= GR_TEXT;
-                return;
-            case 0x52:
-                graphicsMode &= ~GR_MIXMODE;
-                return;
-            case 0x53:
-                graphicsMode |= GR_MIXMODE;
-                return;
-            case 0x54:
-                graphicsMode &= ~GR_PAGE2;
-                updateMainMemoryMap();
-                return;
-            case 0x55:
-                graphicsMode |= GR_PAGE2;
-                updateMainMemoryMap();
-                return;
-            case 0x56:
-                graphicsMode &= ~GR_HIRES;
-                updateMainMemoryMap();
-                return;
-            case 0x57:
-                graphicsMode |= GR_HIRES;
-                updateMainMemoryMap();
-                return;
-            case 0x58:
-            case 0x59:
-            case 0x5a:
-            case 0x5b:
-            case 0x5c:
-            case 0x5d:
-                // Annunciators
-                return;
-            case 0x5e:
-                graphicsMode |= GR_DHIRES;
-                break;
-            case 0x5f:
-                graphicsMode &= ~GR_DHIRES;
-                break;
-
-            case 0x60:
-            case 0x61:
-            case 0x62:
-            case 0x63:
-            case 0x64:
-            case 0x65:
-            case 0x66:
-            case 0x67:
-            case 0x68:
-            case 0x69:
-            case 0x6a:
-            case 0x6b:
-            case 0x6c:
-            case 0x6d:
-            case 0x6e:
-            case 0x6f:
-                // Cassette input/paddle data
-                return;
-
-            case 0x70:
-            case 0x71:
-            case 0x72:
-            case 0x73:
-            case 0x74:
-            case 0x75:
-            case 0x76:
-            case 0x77:
-            case 0x78:
-            case 0x79:
-            case 0x7a:
-            case 0x7b:
-            case 0x7c:
-            case 0x7d:
-            case 0x7e:
-            case 0x7f:
-                paddle.triggerRegister();
-                return;
-
-            case 0x80:
-            case 0x84:
-                isLcBank2 = true;
-                isLcReadEnable = true;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x81:
-            case 0x85:
-                isLcBank2 = true;
-                isLcReadEnable = false;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-            case 0x82:
-            case 0x86:
-                isLcBank2 = true;
-                isLcReadEnable = false;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x83:
-            case 0x87:
-                isLcBank2 = true;
-                isLcReadEnable = true;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-            case 0x88:
-            case 0x8c:
-                isLcBank2 = false;
-                isLcReadEnable = true;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x89:
-            case 0x8d:
-                isLcBank2 = false;
-                isLcReadEnable = false;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
-            case 0x8a:
-            case 0x8e:
-                isLcBank2 = false;
-                isLcReadEnable = false;
-                isLcWriteEnable = false;
-                updateLCMemoryMap();
-                break;
-            case 0x8b:
-            case 0x8f:
-                isLcBank2 = false;
-                isLcReadEnable = true;
-                isLcWriteEnable = true;
-                updateLCMemoryMap();
-                break;
+    /**
+     * Emulates one interval, sound and pacing are up to the caller
+     *
+     * @return pacing of the interval
+     */
+    Pacing runInterval() {
+        applyInputs();
+        checkInterrupts();
+
+        // Fast disk access, the speaker resyncs when real time pacing is back
+        Pacing pacing = isDiskAccelerated && isDiskMotorOn() ? Pacing.WARP : this.pacing;
+        intervalPacing = pacing;
+
+//		try {
+        if (isStepMode) {
+            if (isNextStep) {
+                isNextStep = false;
+                executeInstructions(stepCount);
+            }
+        } else {
+            int clocksNeeded = pacing.getClocksPerInterval(cpuSpeed, refreshInterval);
+            while (clocksNeeded > 0) {
+                clocksNeeded -= executeInstructions(1 + (clocksNeeded >> 3));
+            }
         }
+//		}
+//		catch (RuntimeException e)
+//		{
+//			setStepMode(true); // TODO: for breakpoint hack - disable
+//		}
+        publishGraphicsDirty();
+
+        return pacing;
     }
 
     /**
@@ -1259,8 +1838,8 @@ public class EmAppleII extends Em6502 implements Runnable {
      * <p>
      * TODO: The speaker has been merged into this thread.
      * This keeps it in sync but it still needs some work.
-     * Speeding up the CPU (or adding fast disk access as below)
-     * requires proper refactoring of the vavi.apps.appleii.AppleSpeaker class.
+     * When the pacing is not audible (warp, fast disk access)
+     * the speaker just drops the sound instead.
      */
     @Override
     public void run() {
@@ -1269,30 +1848,13 @@ public class EmAppleII extends Em6502 implements Runnable {
                 long refreshStart = System.currentTimeMillis();
                 long refreshDelay;
 
-                checkInterrupts();
+                Pacing pacing = runInterval();
 
-//				try {
-                if (isStepMode) {
-                    if (isNextStep) {
-                        isNextStep = false;
-                        executeInstructions(stepCount);
-                    }
+                if (pacing.isAudible()) {
+                    speaker.refreshSpeaker(); // NOTE: this blocks, syncing emulation and sound
                 } else {
-                    int clocksNeeded = clocksPerInterval;
-                    while (clocksNeeded > 0) {
-                        clocksNeeded -= executeInstructions(1 + (clocksNeeded >> 3));
+                    speaker.resync();
                 }
-                }
-//				}
-//				catch (RuntimeException e)
-//				{
-//					setStepMode(true); // TODO: for breakpoint hack - disable
-//				}
-
-                // TODO: need something like the following for fast disk access
-                //if (slots[6] instanceof vavi.apps.appleii.DiskII && !((vavi.apps.appleii.DiskII)slots[6]).isMotorOn())
-
-                speaker.refreshSpeaker(); // NOTE: this blocks, syncing emulation and sound
                 refreshDelay = System.currentTimeMillis() - refreshStart;
 
                 refreshDelayCumulative += refreshDelay;
@@ -1302,7 +1864,7 @@ public class EmAppleII extends Em6502 implements Runnable {
                     refreshDelayCumulative = refreshCycle = 0;
                 }
 
-                if (refreshDelay < refreshInterval) {
+                if (pacing.isThrottled() && refreshDelay < refreshInterval) {
                     Thread.sleep(refreshInterval - refreshDelay);
             }
         }
@@ -1335,9 +1897,11 @@ public class EmAppleII extends Em6502 implements Runnable {
 
         if (isRestart) {
             // Clear RAM
-            for (int i = 0; i < MEM_ROM_MAIN_LOW; i++) {
-                mem[i] = 0;
+            byte[] zero = new byte[PAGE_SIZE];
+            for (int page = 0; page < MEM_ROM_MAIN_LOW >> 8; page++) {
+                writePage(page, zero, 0);
             }
+            memoryLoaded();
 
             setRandomSeed();
         }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Hosts many machines on a bounded pool of carrier threads.
+ * <p>
+ * A machine does not get a thread of its own, {@link EmAppleII#run()} and
+ * {@link AppleDisplay#run()} are not used. Instead each emulator interval
+ * (1/20 s of emulated time) is a time slice task that is scheduled again
+ * at the start of the next interval, so a carrier thread never sleeps
+ * and any carrier may run any machine. Machines are silent, the display
+ * is rendered by the slice when an emulated frame to be rendered has ended.
+ * <p>
+ * A machine which cannot keep up skips the missed time instead of catching up.
+ * Machines with a non throttled pacing ({@link Pacing#WARP}) are queued
+ * again at once and share the carriers with the others.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class EmulatorFarm implements AutoCloseable {
+
+    private static final Logger logger = getLogger(EmulatorFarm.class.getName());
+
+    /** intervals a machine may fall behind before the missed time is skipped */
+    private static final int MAX_LAG_INTERVALS = 4;
+
+    /** A hosted machine */
+    public static final class Machine {
+
+        private final EmAppleII apple;
+        private final AppleDisplay display;
+
+        /** held while a slice runs */
+        private final Object lock = new Object();
+
+        /** when the current slice should start, System.nanoTime() */
+        private long deadline;
+
+        private volatile boolean isRemoved;
+
+        private volatile long slices;
+        private volatile long overruns;
+
+        private Machine(EmAppleII apple, AppleDisplay display) {
+            this.apple = apple;
+            this.display = display;
+        }
+
+        public EmAppleII getApple() {
+            return apple;
+        }
+
+        /** @return null if none */
+        public AppleDisplay getDisplay() {
+            return display;
+        }
+
+        /** time slices run */
+        public long getSlices() {
+            return slices;
+        }
+
+        /** time slices that ended more than an interval behind schedule */
+        public long getOverruns() {
+            return overruns;
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor carriers;
+
+    private final Set<Machine> machines = ConcurrentHashMap.newKeySet();
+
+    /** resource, pages */
+    private final Map<String, Rom> roms = new ConcurrentHashMap<>();
+
+    /**
+     * @param carriers number of carrier threads, e.g. the number of cores
+     */
+    public EmulatorFarm(int carriers) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "EmulatorFarm-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.carriers = new ScheduledThreadPoolExecutor(carriers, factory);
+        this.carriers.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * ROM shared by all machines of this farm, it is read once per resource
+     * and {@link EmAppleII#loadRom(Rom)} shares its pages instead of copying them
+     */
+    public Rom getRom(AppleIIGo.Dao dao, String resource) {
+        return roms.computeIfAbsent(resource, k -> new Rom(EmAppleII.readRom(dao, k), k));
+    }
+
+    /**
+     * Starts hosting a machine
+     *
+     * @param apple a paused machine, it must not be resumed while hosted
+     * @param display null for none, it must not be resumed while hosted
+     */
+    public Machine add(EmAppleII apple, AppleDisplay display) {
+        if (!apple.getPaused() || (display != null && !display.isPaused())) {
+            throw new IllegalStateException("machine is running on its own");
+        }
+
+        Machine machine = new Machine(apple, display);
+        machine.deadline = System.nanoTime();
+        apple.isHosted = true;
+        machines.add(machine);
+        carriers.execute(() -> slice(machine));
+        return machine;
+    }
+
+    /**
+     * Stops hosting a machine, waits for a running slice to complete,
+     * after that the machine may be resumed.
+     * It must not be called from a slice of another machine.
+     */
+    public void remove(Machine machine) {
+        machine.isRemoved = true;
+        machines.remove(machine);
+        synchronized (machine.lock) {
+            machine.apple.isHosted = false;
+        }
+    }
+
+    /**
+     * Number of hosted machines
+     */
+    public int size() {
+        return machines.size();
+    }
+
+    /**
+     * One emulator interval of a machine
+     */
+    private void slice(Machine machine) {
+        synchronized (machine.lock) {
+            if (machine.isRemoved || carriers.isShutdown()) {
+                return;
+            }
+
+            try {
+                Pacing pacing = machine.apple.runInterval();
+                machine.slices++;
+
+                if (machine.display != null && machine.display.isFrameReady()) {
+                    machine.display.refresh();
+                }
+
+                long now = System.nanoTime();
+
+                if (pacing.isThrottled()) {
+                    long interval = TimeUnit.MILLISECONDS.toNanos(machine.apple.getRefreshInterval());
+                    if (now - machine.deadline > interval) {
+                        machine.overruns++;
+                    }
+                    machine.deadline += interval;
+                    if (now - machine.deadline > interval * MAX_LAG_INTERVALS) {
+                        machine.deadline = now;
+                    }
+                    carriers.schedule(() -> slice(machine), machine.deadline - now, TimeUnit.NANOSECONDS);
+                } else {
+                    machine.deadline = now;
+                    carriers.execute(() -> slice(machine));
+                }
+            } catch (RejectedExecutionException e) {
+                // closed
+            } catch (Throwable e) {
+                logger.log(Level.ERROR, e.getMessage(), e);
+                machine.apple.view.debug(e);
+                remove(machine);
+            }
+        }
+    }
+
+    /**
+     * Stops all machines, running slices are completed
+     */
+    @Override
+    public void close() {
+        carriers.shutdownNow();
+        try {
+            carriers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Machine machine : machines) {
+            machine.isRemoved = true;
+            synchronized (machine.lock) {
+                machine.apple.isHosted = false;
+            }
+        }
+        machines.clear();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+
+/**
+ * Triple buffer between the display renderer and one consumer, e.g. the view.
+ * <p>
+ * The renderer draws into the back buffer and publishes it, the consumer
+ * takes the latest published frame. Both sides only swap an index, nobody
+ * waits, and a frame the consumer holds is never drawn into. Frames which
+ * are published faster than they are taken are dropped.
+ *
+ * @param <T> array type of a frame, e.g. byte[] for palette indices
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public final class FrameBuffer<T> {
+
+    /** the ready buffer has not been taken yet */
+    private static final int FRESH = 4;
+
+    private final T[] buffers;
+
+    /** array length of a buffer */
+    private final int length;
+
+    /** frame sequence number of each buffer */
+    private final long[] sequences = new long[3];
+
+    /** index of the last published buffer, or'ed with FRESH */
+    private final AtomicInteger ready = new AtomicInteger(1);
+
+    /** renderer side */
+    private int back = 0;
+    private int published = 1;
+    private long sequence;
+
+    /** consumer side */
+    private int front = 2;
+
+    /**
+     * @param allocator called for each of the three buffers
+     */
+    @SuppressWarnings("unchecked")
+    public FrameBuffer(Supplier<T> allocator) {
+        buffers = (T[]) new Object[] {allocator.get(), allocator.get(), allocator.get()};
+        length = Array.getLength(buffers[0]);
+    }
+
+    /**
+     * The buffer to render into, for the renderer
+     */
+    public T getBackBuffer() {
+        return buffers[back];
+    }
+
+    /**
+     * Publishes the back buffer as a complete frame, for the renderer
+     *
+     * @return the next back buffer, it holds a copy of the published frame
+     *         so that rendering can go on with the dirty parts only
+     */
+    public T publish() {
+        published = back;
+        sequences[published] = ++sequence;
+        back = ready.getAndSet(published | FRESH) & ~FRESH;
+        System.arraycopy(buffers[published], 0, buffers[back], 0, length);
+        return buffers[back];
+    }
+
+    /**
+     * The frame published last, for the renderer to compare with.
+     * The consumer may hold it, it must not be written.
+     */
+    public T getPublished() {
+        return buffers[published];
+    }
+
+    /**
+     * The latest complete frame, for the consumer.
+     * It stays untouched until the next call.
+     */
+    public T getFrame() {
+        if ((ready.get() & FRESH) != 0) {
+            front = ready.getAndSet(front) & ~FRESH;
+        }
+        return buffers[front];
+    }
+
+    /**
+     * Sequence number of the frame last returned by {@link #getFrame()},
+     * 0 before any was published
+     */
+    public long getSequence() {
+        return sequences[front];
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Expands a frame of palette indices, e.g. {@link FrameBuffer#getFrame()} of
+ * {@link AppleDisplay}, into palette colors scaled by an integer factor,
+ * for views which need the pixels themselves, e.g. to stream them.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public interface FrameScaler {
+
+    /** largest scale */
+    int MAX_SCALE = 4;
+
+    /**
+     * @param frame {@link AppleDisplay#DISPLAY_SIZE_X} x {@link AppleDisplay#DISPLAY_SIZE_Y}
+     *        indices into the palette
+     * @param palette e.g. {@link AppleDisplay#getPalette()}
+     * @param dest scale * {@link AppleDisplay#DISPLAY_SIZE_X} x scale * {@link AppleDisplay#DISPLAY_SIZE_Y}
+     *        colors
+     * @param scale 1 to {@link #MAX_SCALE}
+     */
+    void scale(byte[] frame, int[] palette, int[] dest, int scale);
+
+    /**
+     * The vectorized one when it is built (the vector profile) and the
+     * jdk.incubator.vector module is added (--add-modules jdk.incubator.vector),
+     * otherwise {@link #scalar()}
+     */
+    static FrameScaler getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    /** Pixel by pixel */
+    static FrameScaler scalar() {
+        return Holder.SCALAR;
+    }
+
+    /** lazily loads the vectorized one */
+    final class Holder {
+
+        private static final Logger logger = getLogger(FrameScaler.class.getName());
+
+        private static final FrameScaler SCALAR = new ScalarFrameScaler();
+
+        private static final FrameScaler DEFAULT = load();
+
+        private Holder() {
+        }
+
+        private static FrameScaler load() {
+            try {
+                FrameScaler scaler = (FrameScaler) Class.forName("vavi.apps.appleii.VectorFrameScaler")
+                        .getDeclaredConstructor().newInstance();
+                if (!matchesScalar(scaler)) {
+                    logger.log(Level.DEBUG, "frame scaler: scalar, vector one differs");
+                    return SCALAR;
+                }
+                logger.log(Level.DEBUG, "frame scaler: vector");
+                return scaler;
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                logger.log(Level.DEBUG, "frame scaler: scalar, " + e);
+                return SCALAR;
+            }
+        }
+
+        /**
+         * Runs two lines of every index through both at every scale,
+         * the Vector API may fail or differ by the jdk and the vector size.
+         */
+        private static boolean matchesScalar(FrameScaler scaler) {
+            int[] palette = new int[AppleDisplay.PALETTE_SIZE];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = i;
+            }
+            byte[] frame = new byte[AppleDisplay.DISPLAY_SIZE_X * 2];
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = (byte) (i % palette.length);
+            }
+            for (int scale = 1; scale <= MAX_SCALE; scale++) {
+                int[] expected = new int[frame.length * scale * scale];
+                int[] actual = new int[expected.length];
+                SCALAR.scale(frame, palette, expected, scale);
+                scaler.scale(frame, palette, actual, scale);
+                if (!Arrays.equals(expected, actual)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * An input to the machine, stamped with the CPU clock it was applied at.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public final class InputEvent {
+
+    /** key pressed, value: key code */
+    public static final int KEY = 0;
+    /** paddle button, index: button, value: 1 pressed, 0 released */
+    public static final int BUTTON = 1;
+    /** paddle position, index: paddle, value: position */
+    public static final int PADDLE = 2;
+    /** disk swap, index: drive, resource: disk image, null to eject */
+    public static final int DISK = 3;
+    /** reset, value: 1 restart, 0 reset */
+    public static final int RESET = 4;
+
+    /** CPU clock applied at, -1 if not applied yet */
+    public final long clock;
+    public final int type;
+    public final int index;
+    public final int value;
+    public final String resource;
+
+    private InputEvent(long clock, int type, int index, int value, String resource) {
+        this.clock = clock;
+        this.type = type;
+        this.index = index;
+        this.value = value;
+        this.resource = resource;
+    }
+
+    public static InputEvent key(int key) {
+        return new InputEvent(-1, KEY, 0, key, null);
+    }
+
+    public static InputEvent button(int button, boolean pressed) {
+        return new InputEvent(-1, BUTTON, button, pressed ? 1 : 0, null);
+    }
+
+    public static InputEvent paddle(int paddle, int value) {
+        return new InputEvent(-1, PADDLE, paddle, value, null);
+    }
+
+    public static InputEvent disk(int drive, String resource) {
+        return new InputEvent(-1, DISK, drive, 0, resource);
+    }
+
+    public static InputEvent reset(boolean restart) {
+        return new InputEvent(-1, RESET, 0, restart ? 1 : 0, null);
+    }
+
+    /** @return this event stamped with a CPU clock */
+    InputEvent at(long clock) {
+        return new InputEvent(clock, type, index, value, resource);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(clock);
+        out.writeByte(type);
+        out.writeByte(index);
+        out.writeInt(value);
+        out.writeBoolean(resource != null);
+        if (resource != null) {
+            out.writeUTF(resource);
+        }
+    }
+
+    public static InputEvent read(DataInput in) throws IOException {
+        long clock = in.readLong();
+        int type = in.readByte();
+        int index = in.readByte();
+        int value = in.readInt();
+        String resource = in.readBoolean() ? in.readUTF() : null;
+        return new InputEvent(clock, type, index, value, resource);
+    }
+
+    @Override
+    public String toString() {
+        return clock + ": " + switch (type) {
+            case KEY -> "key " + value;
+            case BUTTON -> "button " + index + (value != 0 ? " pressed" : " released");
+            case PADDLE -> "paddle " + index + " " + value;
+            case DISK -> "disk " + index + " " + resource;
+            case RESET -> value != 0 ? "restart" : "reset";
+            default -> "unknown " + type;
+        };
+    }
+}
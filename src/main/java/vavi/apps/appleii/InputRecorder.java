@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Records the inputs applied to a machine.
+ * <p>
+ * A session replays bit exactly when it starts from the same state
+ * (e.g. a snapshot, or power on with the same ROM, disks and peripherals)
+ * with the same random seed, see {@link EmAppleII#EmAppleII(AppleIIGo.View, long)}
+ * and {@link EmAppleII#setSeed(long)}.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class InputRecorder {
+
+    /** "A2IR" */
+    private static final int MAGIC = 0x41324952;
+    private static final int VERSION = 1;
+
+    private final long seed;
+
+    private final List<InputEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param seed random seed the session runs with
+     */
+    public InputRecorder(long seed) {
+        this.seed = seed;
+    }
+
+    /** Called from the emulator thread */
+    void record(InputEvent event) {
+        events.add(event);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /** @return recorded events, oldest first */
+    public List<InputEvent> getEvents() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        List<InputEvent> events = getEvents();
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeLong(seed);
+        dos.writeInt(events.size());
+        for (InputEvent event : events) {
+            event.write(dos);
+        }
+        dos.flush();
+    }
+
+    /**
+     * @throws IOException not a recording of this version
+     */
+    public static InputRecorder read(InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+            throw new IOException("not an input recording");
+        }
+        InputRecorder recorder = new InputRecorder(dis.readLong());
+        int count = dis.readInt();
+        for (int i = 0; i < count; i++) {
+            recorder.events.add(InputEvent.read(dis));
+        }
+        return recorder;
+    }
+}
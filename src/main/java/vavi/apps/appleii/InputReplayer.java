@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.util.List;
+
+
+/**
+ * Applies recorded inputs at the CPU clocks they were recorded at.
+ * <p>
+ * Events are fired by the CPU {@link Scheduler}, so the machine may run
+ * at any pacing, e.g. {@link Pacing#WARP}, or be driven by
+ * {@link EmAppleII#executeInstructions(int)} directly.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class InputReplayer {
+
+    private final EmAppleII apple;
+
+    private final List<InputEvent> events;
+    private int next;
+
+    private final int eventId;
+
+    /**
+     * Sets the recording's seed on the machine.
+     * The machine must be in the state the recording started from.
+     */
+    public InputReplayer(EmAppleII apple, InputRecorder recording) {
+        this.apple = apple;
+        this.events = recording.getEvents();
+
+        apple.setSeed(recording.getSeed());
+        eventId = apple.scheduler.register(this::fire);
+        if (!events.isEmpty()) {
+            apple.scheduler.schedule(eventId, events.get(0).clock);
+        }
+    }
+
+    private void fire(long clock) {
+        while (next < events.size() && events.get(next).clock <= clock) {
+            apple.applyInput(events.get(next++));
+        }
+        if (next < events.size()) {
+            apple.scheduler.schedule(eventId, events.get(next).clock);
+        }
+    }
+
+    /**
+     * Are all events applied
+     */
+    public boolean isDone() {
+        return next >= events.size();
+    }
+}
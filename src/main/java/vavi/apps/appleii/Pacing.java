@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+
+/**
+ * How fast the emulator thread runs compared to wall time.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public interface Pacing {
+
+    /** clock of a real Apple II in kHz */
+    int APPLE_II_SPEED = 1023;
+
+    /**
+     * @param cpuSpeed configured CPU speed in kHz
+     * @param refreshInterval wall time of an interval in ms
+     * @return clocks to execute per interval
+     */
+    int getClocksPerInterval(int cpuSpeed, long refreshInterval);
+
+    /**
+     * @return true: the rest of the interval is slept away,
+     *         false: the next interval starts at once
+     */
+    boolean isThrottled();
+
+    /**
+     * @return true: the emulator thread waits for the speaker,
+     *         false: sound is dropped, nothing blocks the CPU
+     */
+    boolean isAudible();
+
+    /**
+     * Runs at a fixed multiple of a real Apple II, regardless of the configured CPU speed.
+     * Sound is only played at 1x.
+     *
+     * @param factor finite, at least a clock per ms of an interval, i.e. 1 / {@link #APPLE_II_SPEED}
+     * @throws IllegalArgumentException NaN, infinite or too small a factor, no clock would run
+     */
+    static Pacing multiple(double factor) {
+        if (!Double.isFinite(factor) || APPLE_II_SPEED * factor < 1) {
+            throw new IllegalArgumentException("factor: " + factor);
+        }
+
+        boolean isAudible = factor == 1;
+        return new Pacing() {
+            @Override
+            public int getClocksPerInterval(int cpuSpeed, long refreshInterval) {
+                return (int) (APPLE_II_SPEED * factor * refreshInterval);
+            }
+
+            @Override
+            public boolean isThrottled() {
+                return true;
+            }
+
+            @Override
+            public boolean isAudible() {
+                return isAudible;
+            }
+
+            @Override
+            public String toString() {
+                return factor + "x";
+            }
+        };
+    }
+
+    /**
+     * @param value "realtime", "warp" or a multiple of 1.023 MHz, e.g. "2"
+     * @throws IllegalArgumentException unknown value, or a multiple rejected by {@link #multiple(double)}
+     */
+    static Pacing valueOf(String value) {
+        return switch (value) {
+            case "realtime" -> REALTIME;
+            case "warp" -> WARP;
+            default -> multiple(Double.parseDouble(value));
+        };
+    }
+
+    /** Runs at the configured CPU speed, synchronized with the speaker. */
+    Pacing REALTIME = new Pacing() {
+        @Override
+        public int getClocksPerInterval(int cpuSpeed, long refreshInterval) {
+            return (int) (cpuSpeed * refreshInterval);
+        }
+
+        @Override
+        public boolean isThrottled() {
+            return true;
+        }
+
+        @Override
+        public boolean isAudible() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "realtime";
+        }
+    };
+
+    /**
+     * Runs as fast as the host allows, without sound.
+     * Intervals keep their size so interrupts, pausing and the display still get their turn.
+     */
+    Pacing WARP = new Pacing() {
+        @Override
+        public int getClocksPerInterval(int cpuSpeed, long refreshInterval) {
+            return (int) (cpuSpeed * refreshInterval);
+        }
+
+        @Override
+        public boolean isThrottled() {
+            return false;
+        }
+
+        @Override
+        public boolean isAudible() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "warp";
+        }
+    };
+}
@@ -7,7 +7,8 @@
 
 package vavi.apps.appleii;
 
-import java.util.function.Supplier;
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
 
 
 public class Paddle {
@@ -21,7 +22,7 @@ public class Paddle {
     public static final int PADDLEMODE_FILTERED = 1;
 
     /** Instances of other classes */
-    private final Supplier<Integer> clock;
+    private final LongSupplier clock;
 
     /** Button variables */
     private final int[] buttonRegister = new int[4];
@@ -29,7 +30,7 @@ public class Paddle {
     /** Paddle variables */
 //	  private int paddleMode;
 
-    private final int[] paddleClockEvent = new int[4];
+    private final long[] paddleClockEvent = new long[4];
     private final int[] paddleClockInc = new int[4];
 
     /**
@@ -37,7 +38,7 @@ public class Paddle {
      *
      * @param clock The EmAppleII clock supplier
      */
-    public Paddle(Supplier<Integer> clock) {
+    public Paddle(LongSupplier clock) {
         this.clock = clock;
 
         setPaddlePos(0, PADDLE_CENTER);
@@ -84,10 +85,11 @@ public class Paddle {
      * Trigger paddle register
      */
     public void triggerRegister() {
-        paddleClockEvent[0] = clock.get() + paddleClockInc[0];
-        paddleClockEvent[1] = clock.get() + paddleClockInc[1];
-        paddleClockEvent[2] = clock.get() + paddleClockInc[2];
-        paddleClockEvent[3] = clock.get() + paddleClockInc[3];
+        long now = clock.getAsLong();
+        paddleClockEvent[0] = now + paddleClockInc[0];
+        paddleClockEvent[1] = now + paddleClockInc[1];
+        paddleClockEvent[2] = now + paddleClockInc[2];
+        paddleClockEvent[3] = now + paddleClockInc[3];
     }
 
     /**
@@ -96,6 +98,40 @@ public class Paddle {
      * @param paddle Address
      */
     public int getPaddleRegister(int paddle) {
-        return ((((paddleClockEvent[paddle] - clock.get()) & 0x7fff_ffff) < 0x4000_0000) ? 0x80 : 0x00);
+        return paddleClockEvent[paddle] >= clock.getAsLong() ? 0x80 : 0x00;
+    }
+
+    /** State size for a snapshot */
+    static final int STATE_SIZE = 4 * (4 + 8 + 4);
+
+    /**
+     * Writes buttons and paddle timers for a snapshot
+     */
+    void saveState(ByteBuffer buffer) {
+        for (int i = 0; i < 4; i++) {
+            buffer.putInt(buttonRegister[i]);
+            buffer.putLong(paddleClockEvent[i]);
+            buffer.putInt(paddleClockInc[i]);
+        }
+    }
+
+    /**
+     * Copies buttons and paddle timers of another paddle
+     */
+    void copyState(Paddle from) {
+        System.arraycopy(from.buttonRegister, 0, buttonRegister, 0, 4);
+        System.arraycopy(from.paddleClockEvent, 0, paddleClockEvent, 0, 4);
+        System.arraycopy(from.paddleClockInc, 0, paddleClockInc, 0, 4);
+    }
+
+    /**
+     * Reads buttons and paddle timers from a snapshot
+     */
+    void loadState(ByteBuffer buffer) {
+        for (int i = 0; i < 4; i++) {
+            buttonRegister[i] = buffer.getInt();
+            paddleClockEvent[i] = buffer.getLong();
+            paddleClockInc[i] = buffer.getInt();
+        }
     }
 }
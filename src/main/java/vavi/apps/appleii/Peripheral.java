@@ -8,6 +8,7 @@
 
 package vavi.apps.appleii;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 
@@ -52,4 +53,59 @@ public class Peripheral {
      */
     public void reset() {
     }
+
+    /**
+     * Seeds the floating bus for a deterministic session
+     */
+    public void setSeed(long seed) {
+        rand.setSeed(seed);
+    }
+
+    /**
+     * Copy of this peripheral for a forked machine, it must not be written to
+     * by one machine in a way the other can see
+     *
+     * @param apple the forked machine
+     */
+    public Peripheral fork(EmAppleII apple) {
+        return new Peripheral();
+    }
+
+    /**
+     * State size for a snapshot or a rewind checkpoint
+     */
+    public int getStateSize() {
+        return 0;
+    }
+
+    /**
+     * Writes registers for a snapshot or a rewind checkpoint
+     */
+    public void saveState(ByteBuffer buffer) {
+    }
+
+    /**
+     * Reads registers from a snapshot or a rewind checkpoint
+     */
+    public void loadState(ByteBuffer buffer) {
+    }
+
+    /**
+     * Media size for a snapshot
+     */
+    public int getMediaSize() {
+        return 0;
+    }
+
+    /**
+     * Writes inserted media, e.g. disks, for a snapshot
+     */
+    public void saveMedia(ByteBuffer buffer) {
+    }
+
+    /**
+     * Reads inserted media from a snapshot
+     */
+    public void loadMedia(ByteBuffer buffer) {
+    }
 }
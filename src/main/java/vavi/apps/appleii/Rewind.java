@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * Rewind buffer.
+ * <p>
+ * A checkpoint keeps the core state (CPU, soft switches, peripheral registers)
+ * and, as an undo delta, the previous contents of the memory pages written since
+ * the checkpoint before it. Pages written back with the same contents are not kept.
+ * The oldest checkpoints are dropped to stay within the memory budget.
+ * <p>
+ * Disk contents are media, they are not rewound.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class Rewind {
+
+    private static final int PAGE_SIZE = 0x100;
+    private static final int PAGES = EmAppleII.MEM_END / PAGE_SIZE;
+
+    /** One checkpoint */
+    private static final class Checkpoint {
+        final long clock;
+        final byte[] core;
+        /** physical pages in undo */
+        final int[] pages;
+        /** contents of the pages at the checkpoint before */
+        final byte[] undo;
+
+        Checkpoint(long clock, byte[] core, int[] pages, byte[] undo) {
+            this.clock = clock;
+            this.core = core;
+            this.pages = pages;
+            this.undo = undo;
+        }
+
+        int size() {
+            return core.length + pages.length * 4 + undo.length;
+        }
+    }
+
+    private final EmAppleII apple;
+
+    /** emulated frames per checkpoint */
+    private final int frames;
+    private int frameCount;
+
+    /** bytes the checkpoints may hold */
+    private final long budget;
+    private long size;
+
+    /** oldest first */
+    private final ArrayDeque<Checkpoint> checkpoints = new ArrayDeque<>();
+
+    /** memory at the latest checkpoint */
+    private byte[] shadow;
+
+    /**
+     * @param frames emulated frames ({@link EmAppleII#CYCLES_PER_FRAME}, about 1/60 s) per checkpoint
+     * @param budget bytes the checkpoints may hold, the memory shadow not counted
+     */
+    public Rewind(EmAppleII apple, int frames, long budget) {
+        this.apple = apple;
+        this.frames = frames;
+        this.budget = budget;
+    }
+
+    /**
+     * Called by the emulator thread at the end of each emulated frame,
+     * between two instructions
+     */
+    void onFrame() {
+        if (++frameCount >= frames) {
+            frameCount = 0;
+            checkpoint();
+        }
+    }
+
+    /**
+     * Takes a checkpoint, the emulator must be paused or this must be called from its thread
+     */
+    public void checkpoint() {
+        ByteBuffer core = ByteBuffer.allocate(apple.getCoreStateSize());
+        apple.saveCoreState(core);
+
+        long[] dirty = apple.dirtyPages;
+        if (shadow == null) {
+            shadow = new byte[EmAppleII.MEM_END];
+            for (int page = 0; page < PAGES; page++) {
+                apple.readPage(page, shadow, page * PAGE_SIZE);
+            }
+            Arrays.fill(dirty, 0);
+            add(new Checkpoint(apple.getClock(), core.array(), new int[0], new byte[0]));
+            return;
+        }
+
+        // zero page and stack are written without being tracked
+        dirty[0] |= 3;
+
+        int[] pages = new int[PAGES];
+        byte[] contents = new byte[PAGE_SIZE];
+        int count = 0;
+        for (int i = 0; i < dirty.length; i++) {
+            long bits = dirty[i];
+            while (bits != 0) {
+                int page = (i << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int offset = page * PAGE_SIZE;
+                if (page < PAGES) {
+                    apple.readPage(page, contents, 0);
+                    if (Arrays.mismatch(contents, 0, PAGE_SIZE, shadow, offset, offset + PAGE_SIZE) >= 0) {
+                        pages[count++] = page;
+                    }
+                }
+            }
+        }
+        Arrays.fill(dirty, 0);
+
+        byte[] undo = new byte[count * PAGE_SIZE];
+        for (int i = 0; i < count; i++) {
+            int offset = pages[i] * PAGE_SIZE;
+            System.arraycopy(shadow, offset, undo, i * PAGE_SIZE, PAGE_SIZE);
+            apple.readPage(pages[i], shadow, offset);
+        }
+
+        add(new Checkpoint(apple.getClock(), core.array(), Arrays.copyOf(pages, count), undo));
+    }
+
+    private void add(Checkpoint checkpoint) {
+        checkpoints.addLast(checkpoint);
+        size += checkpoint.size();
+        while (size > budget && checkpoints.size() > 1) {
+            size -= checkpoints.removeFirst().size();
+        }
+    }
+
+    /**
+     * Number of checkpoints to go back to
+     */
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    /**
+     * CPU clock of a checkpoint
+     *
+     * @param index 0 is the latest
+     */
+    public long getCheckpointClock(int index) {
+        Iterator<Checkpoint> i = checkpoints.descendingIterator();
+        for (int j = 0; j < index && i.hasNext(); j++) {
+            i.next();
+        }
+        if (!i.hasNext()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return i.next().clock;
+    }
+
+    /**
+     * Bytes held by the checkpoints
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Goes back to a checkpoint, the newer ones are dropped.
+     * The emulator must be paused or this must be called from its thread.
+     *
+     * @param index 0 is the latest
+     */
+    public void rewind(int index) {
+        if (index < 0 || index >= checkpoints.size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        long[] dirty = apple.dirtyPages;
+
+        // back to the latest checkpoint
+        dirty[0] |= 3;
+        for (int i = 0; i < dirty.length; i++) {
+            long bits = dirty[i];
+            while (bits != 0) {
+                int page = (i << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (page < PAGES) {
+                    apple.writePage(page, shadow, page * PAGE_SIZE);
+                }
+            }
+        }
+        Arrays.fill(dirty, 0);
+
+        // and further back
+        for (int i = 0; i < index; i++) {
+            Checkpoint checkpoint = checkpoints.removeLast();
+            size -= checkpoint.size();
+            for (int j = 0; j < checkpoint.pages.length; j++) {
+                int offset = checkpoint.pages[j] * PAGE_SIZE;
+                apple.writePage(checkpoint.pages[j], checkpoint.undo, j * PAGE_SIZE);
+                System.arraycopy(checkpoint.undo, j * PAGE_SIZE, shadow, offset, PAGE_SIZE);
+            }
+        }
+
+        apple.loadCheckpoint(ByteBuffer.wrap(checkpoints.getLast().core));
+        frameCount = 0;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * ROM image split into the physical memory pages of {@link EmAppleII}.
+ * <p>
+ * The pages are built once per image and installed by {@link EmAppleII#loadRom(Rom)}
+ * as shared pages, so machines loading the same image don't copy it.
+ * They are never written.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public final class Rom {
+
+    private static final Logger logger = getLogger(Rom.class.getName());
+
+    /** first physical page of {@link #pages} */
+    static final int FIRST_PAGE = EmAppleII.MEM_ROM_MAIN_LOW >> 8;
+
+    /**
+     * Main ROM, internal ROM and the external 0xc800-0xcfff ROM by physical page
+     * from {@link #FIRST_PAGE}, null for the slot ROM pages, they come from the peripherals
+     */
+    final byte[][] pages = new byte[(EmAppleII.MEM_ROM_EXTERNAL + 0x1000 - EmAppleII.MEM_ROM_MAIN_LOW) >> 8][];
+
+    /**
+     * @param image read by {@link EmAppleII#readRom(AppleIIGo.Dao, String)}, it is not modified
+     * @param resource for the error message
+     * @throws IllegalArgumentException not a ROM image
+     */
+    public Rom(byte[] image, String resource) {
+        int offset;
+
+        if (isValidRom(image, 0x0)) {
+            offset = 0x0;
+        } else if (isValidRom(image, 0x1000)) {
+            offset = 0x1000;
+        } else if (isValidRom(image, 0x2000)) {
+            offset = 0x2000;
+        } else {
+            throw new IllegalArgumentException(resource);
+        }
+
+        // Main ROM
+        split(image, offset, EmAppleII.MEM_ROM_MAIN_LOW, 0x03000);
+
+        // Internal ROM
+        split(image, offset + 0x3000, EmAppleII.MEM_ROM_INTERNAL + 0x00000, 0x01000);
+        split(image, offset + 0x3800, EmAppleII.MEM_ROM_EXTERNAL + 0x00800, 0x00800);
+    }
+
+    private static boolean isValidRom(byte[] rom, int offset) {
+        // Integer BASIC?
+        if ((rom[offset + 0x1000] & 0xff) == 0x20) {
+            logger.log(Level.TRACE, "ROM: Integer BASIC");
+            return true;
+        }
+
+        // Applesoft BASIC?
+        if ((rom[offset + 0x1000] & 0xff) == 0x4c) {
+            logger.log(Level.TRACE, "ROM: Applesoft BASIC");
+            return true;
+        }
+
+        return false;
+    }
+
+    private void split(byte[] image, int offset, int physical, int length) {
+        for (int i = 0; i < length; i += 0x100) {
+            byte[] page = new byte[0x100];
+            System.arraycopy(image, offset + i, page, 0, 0x100);
+            pages[((physical + i) >> 8) - FIRST_PAGE] = page;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+
+/**
+ * {@link FrameScaler} pixel by pixel, the fallback of the vectorized one.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+final class ScalarFrameScaler implements FrameScaler {
+
+    @Override
+    public void scale(byte[] frame, int[] palette, int[] dest, int scale) {
+        checkScale(scale);
+
+        int width = AppleDisplay.DISPLAY_SIZE_X;
+        int destWidth = width * scale;
+        int destOffset = 0;
+        for (int offset = 0; offset < frame.length; offset += width) {
+            for (int x = 0; x < width; x++) {
+                int to = destOffset + x * scale;
+                int color = palette[frame[offset + x] & 0xff];
+                for (int i = 0; i < scale; i++) {
+                    dest[to + i] = color;
+                }
+            }
+            copyLines(dest, destOffset, destWidth, scale);
+            destOffset += destWidth * scale;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException scale is out of range
+     */
+    static void checkScale(int scale) {
+        if (scale < 1 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale: " + scale);
+        }
+    }
+
+    /**
+     * Repeats a scaled line for the rest of its scale
+     */
+    static void copyLines(int[] dest, int destOffset, int destWidth, int scale) {
+        for (int line = 1; line < scale; line++) {
+            System.arraycopy(dest, destOffset, dest, destOffset + line * destWidth, destWidth);
+        }
+    }
+}
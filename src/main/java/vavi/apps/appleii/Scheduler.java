@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Events due at a CPU clock.
+ * <p>
+ * Events are registered once and then scheduled, rescheduled or canceled by id,
+ * which needs no allocation. The CPU fires them at the first instruction boundary
+ * at or after the clock they are due.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public final class Scheduler {
+
+    /** Event callback */
+    @FunctionalInterface
+    public interface Event {
+
+        /**
+         * Called from the CPU thread. It may schedule events,
+         * but an event due at once is fired in the same dispatch.
+         *
+         * @param clock the clock the event was due at
+         */
+        void fire(long clock);
+    }
+
+    /** registered events by id */
+    private Event[] events = new Event[4];
+    /** due clock by id */
+    private long[] due = new long[4];
+    /** index in the heap by id, -1 if not scheduled */
+    private int[] position = new int[4];
+    private int count;
+
+    /** ids ordered by due clock */
+    private int[] heap = new int[4];
+    private int size;
+
+    /** due clock of the earliest event, polled by the CPU */
+    long next = Long.MAX_VALUE;
+
+    /**
+     * @return id to schedule the event with
+     */
+    public int register(Event event) {
+        if (count == events.length) {
+            int length = count * 2;
+            events = Arrays.copyOf(events, length);
+            due = Arrays.copyOf(due, length);
+            position = Arrays.copyOf(position, length);
+            heap = Arrays.copyOf(heap, length);
+        }
+
+        events[count] = event;
+        position[count] = -1;
+        return count++;
+    }
+
+    /**
+     * Schedules or reschedules an event
+     *
+     * @param clock CPU clock the event is due
+     */
+    public void schedule(int id, long clock) {
+        due[id] = clock;
+        int i = position[id];
+        if (i < 0) {
+            i = size++;
+            heap[i] = id;
+            position[id] = i;
+        }
+        siftDown(siftUp(i));
+        updateNext();
+    }
+
+    /**
+     * Cancels an event, does nothing if it is not scheduled
+     */
+    public void cancel(int id) {
+        int i = position[id];
+        if (i < 0) {
+            return;
+        }
+
+        position[id] = -1;
+        size--;
+        if (i != size) {
+            heap[i] = heap[size];
+            position[heap[i]] = i;
+            siftDown(siftUp(i));
+        }
+        updateNext();
+    }
+
+    /**
+     * Is an event scheduled
+     */
+    public boolean isScheduled(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Fires all events due at the clock
+     */
+    void dispatch(long clock) {
+        while (size > 0 && due[heap[0]] <= clock) {
+            int id = heap[0];
+            cancel(id);
+            events[id].fire(due[id]);
+        }
+        updateNext();
+    }
+
+    /**
+     * @return bytes written by {@link #saveState(ByteBuffer)}
+     */
+    int getStateSize() {
+        return 4 + count * 8;
+    }
+
+    /**
+     * Writes the due clock of every registered event, -1 if not scheduled
+     */
+    void saveState(ByteBuffer buffer) {
+        buffer.putInt(count);
+        for (int id = 0; id < count; id++) {
+            buffer.putLong(position[id] >= 0 ? due[id] : -1);
+        }
+    }
+
+    /**
+     * Reads what {@link #saveState(ByteBuffer)} wrote, events must be registered the same way
+     *
+     * @throws IllegalArgumentException the number of registered events differs
+     */
+    void loadState(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count != this.count) {
+            throw new IllegalArgumentException("events: " + count + ", registered: " + this.count);
+        }
+
+        size = 0;
+        for (int id = 0; id < count; id++) {
+            long clock = buffer.getLong();
+            position[id] = -1;
+            if (clock >= 0) {
+                schedule(id, clock);
+            }
+        }
+        updateNext();
+    }
+
+    /**
+     * Schedules events like another scheduler, events must be registered the same way
+     *
+     * @throws IllegalArgumentException the number of registered events differs
+     */
+    void copyState(Scheduler from) {
+        if (from.count != count) {
+            throw new IllegalArgumentException("events: " + from.count + ", registered: " + count);
+        }
+
+        size = 0;
+        for (int id = 0; id < count; id++) {
+            position[id] = -1;
+            if (from.position[id] >= 0) {
+                schedule(id, from.due[id]);
+            }
+        }
+        updateNext();
+    }
+
+    private void updateNext() {
+        next = size > 0 ? due[heap[0]] : Long.MAX_VALUE;
+    }
+
+    /** @return the final index */
+    private int siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (due[id] >= due[heap[parent]]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        position[id] = i;
+        return i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && due[heap[child + 1]] < due[heap[child]]) {
+                child++;
+            }
+            if (due[heap[child]] >= due[id]) {
+                break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.headless;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import vavi.apps.appleii.AppleDisplay;
+import vavi.apps.appleii.DiskII;
+import vavi.apps.appleii.EmAppleII;
+import vavi.apps.appleii.InputRecorder;
+import vavi.apps.appleii.InputReplayer;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * AppleIIApp without AWT.
+ * <p>
+ * Boots a ROM and disk images, runs for a number of cycles or until a text
+ * appears on the screen, then dumps the text screen and/or the display image.
+ * Parameters are the ones of appleii.properties, options override them.
+ * <pre>
+ * -c file        appleii.properties, resources are resolved against its directory
+ * -rom file      cpuRom
+ * -disk1 file    diskDrive1
+ * -disk2 file    diskDrive2
+ * -engine n      cpuEngine
+ * -cycles n      cycles to run at most, default 100,000,000
+ * -until text    stops when the text screen contains text, exits with 1 if it never does
+ * -snapshot file restores a snapshot before running
+ * -replay file   applies an input recording, the machine is seeded with its seed at power on,
+ *                a recording which did not start at power on needs the snapshot it started from
+ * -text          prints the text screen
+ * -ppm file      writes the display image
+ * -scale n       scale of the display image, 1 to 4, default 1
+ * </pre>
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class HeadlessApp {
+
+    private static final Logger logger = getLogger(HeadlessApp.class.getName());
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties();
+        Path root = Path.of("");
+        long cycles = 100_000_000L;
+        String until = null;
+        String snapshot = null;
+        String replay = null;
+        boolean text = false;
+        String ppm = null;
+        int scale = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c" -> {
+                    Path config = Path.of(args[++i]);
+                    try (InputStream is = Files.newInputStream(config)) {
+                        props.load(is);
+                    }
+                    root = config.toAbsolutePath().getParent();
+                }
+                case "-rom" -> props.setProperty("cpuRom", args[++i]);
+                case "-disk1" -> props.setProperty("diskDrive1", args[++i]);
+                case "-disk2" -> props.setProperty("diskDrive2", args[++i]);
+                case "-engine" -> props.setProperty("cpuEngine", args[++i]);
+                case "-cycles" -> cycles = Long.parseLong(args[++i]);
+                case "-until" -> until = args[++i];
+                case "-snapshot" -> snapshot = args[++i];
+                case "-replay" -> replay = args[++i];
+                case "-text" -> text = true;
+                case "-ppm" -> ppm = args[++i];
+                case "-scale" -> scale = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("usage: HeadlessApp [-c appleii.properties] [-rom file] [-disk1 file] [-disk2 file]" +
+                            " [-engine n] [-cycles n] [-until text] [-snapshot file] [-replay file] [-text] [-ppm file] [-scale n]");
+                    System.exit(2);
+                }
+            }
+        }
+
+        HeadlessView view = new HeadlessView();
+        HeadlessDao dao = new HeadlessDao(root, props);
+
+        InputRecorder recording = null;
+        if (replay != null) {
+            try (InputStream is = Files.newInputStream(Path.of(replay))) {
+                recording = InputRecorder.read(is);
+            }
+        }
+
+        // seeded before the power on reset runs, a replay from power on starts from the same state
+        EmAppleII apple = recording != null ? new EmAppleII(view, recording.getSeed()) : new EmAppleII(view);
+        String rom = props.getProperty("cpuRom", "");
+        if (!rom.isEmpty()) {
+            apple.loadRom(dao, rom);
+        }
+        apple.setCpuSpeed(Integer.parseInt(props.getProperty("cpuSpeed", "1000")));
+        apple.setEngine(Integer.parseInt(props.getProperty("cpuEngine", "0")));
+
+        AppleDisplay display = new AppleDisplay(apple);
+        display.setColorMode(Integer.parseInt(props.getProperty("displayColorMode", "1")));
+
+        DiskII disk = new DiskII(apple);
+        apple.setPeripheral(disk, 6);
+        for (int drive = 0; drive < 2; drive++) {
+            String resource = props.getProperty("diskDrive" + (drive + 1), "");
+            if (!resource.isEmpty()) {
+                disk.readDisk(dao, drive, resource, false, 254);
+            }
+        }
+
+        if (snapshot != null) {
+            apple.restore(ByteBuffer.wrap(Files.readAllBytes(Path.of(snapshot))));
+        }
+
+        InputReplayer replayer = null;
+        if (recording != null) {
+            replayer = new InputReplayer(apple, recording);
+        }
+
+        boolean found = until == null;
+        long end = apple.getClock() + cycles;
+        long start = System.nanoTime();
+        while (apple.getClock() < end && !found) {
+            apple.runClocks(Math.min(end - apple.getClock(), apple.getCpuSpeed() * 50L));
+            found = until != null && display.getText().contains(until);
+        }
+        if (until == null) {
+            apple.runClocks(end - apple.getClock());
+        }
+        logger.log(Level.DEBUG, "clock: " + apple.getClock() + ", " + (System.nanoTime() - start) / 1_000_000 + " ms" +
+                (replayer != null ? ", replayed: " + replayer.isDone() : ""));
+
+        if (text) {
+            System.out.print(display.getText());
+        }
+        if (ppm != null) {
+            display.refresh();
+            try (OutputStream os = Files.newOutputStream(Path.of(ppm))) {
+                HeadlessView.writePpm(display.getFrameBuffer().getFrame(), scale, os);
+            }
+        }
+
+        System.exit(found ? 0 : 1);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.headless;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import vavi.apps.appleii.AppleIIGo;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Dao reading resources from a directory.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class HeadlessDao implements AppleIIGo.Dao {
+
+    private static final Logger logger = getLogger(HeadlessDao.class.getName());
+
+    private final Path root;
+
+    private final Properties props;
+
+    private InputStream is;
+
+    /**
+     * @param root resources are resolved against this
+     * @param props parameters
+     */
+    public HeadlessDao(Path root, Properties props) {
+        this.root = root;
+        this.props = props;
+    }
+
+    @Override
+    public String getParameter(String parameter) {
+        return props.getProperty(parameter);
+    }
+
+    @Override
+    public void openInputStream(String resource) {
+        try {
+            this.is = Files.newInputStream(root.resolve(resource));
+
+            if (resource.toLowerCase().endsWith(".gz")) {
+                this.is = new GZIPInputStream(is);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void read(byte[] bytes, int offset, int length) {
+        try {
+            int l = is.readNBytes(bytes, offset, length);
+            if (l < length) {
+                logger.log(Level.WARNING, "Illegal EOF: " + l + "/" + length);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void closeInputStream() {
+        try {
+            is.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
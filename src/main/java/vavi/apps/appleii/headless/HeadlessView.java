@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2026 by umjammer, All rights reserved.
+ *
+ * Programmed by umjammer
+ *
+ * Released under the GPL
+ */
+
+package vavi.apps.appleii.headless;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.InflaterInputStream;
+
+import vavi.apps.appleii.AppleDisplay;
+import vavi.apps.appleii.AppleIIGo;
+import vavi.apps.appleii.FrameScaler;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * View without AWT, frames are taken from the display's {@link vavi.apps.appleii.FrameBuffer}
+ * and there is no audio.
+ *
+ * @author umjammer
+ * @version 0.00 261017 umjammer initial version <br>
+ */
+public class HeadlessView implements AppleIIGo.View {
+
+    private static final Logger logger = getLogger(HeadlessView.class.getName());
+
+    /** repaint count */
+    private volatile long frames;
+
+    @Override
+    public byte[] createImageBuffer() {
+        return new byte[AppleDisplay.DISPLAY_SIZE_X * AppleDisplay.DISPLAY_SIZE_Y];
+    }
+
+    @Override
+    public void repaint() {
+        frames++;
+    }
+
+    @Override
+    public void repaintDisplay(int x, int y, int w, int h) {
+        frames++;
+    }
+
+    /** repaint count */
+    public long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void getCharSet(int[] buffer, int w, int h, int s) {
+        try (InputStream is = HeadlessView.class.getResourceAsStream("/character_set.png")) {
+            if (is == null) {
+                throw new IllegalStateException("no /character_set.png");
+            }
+            readPng(is.readAllBytes(), buffer, w, h, s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void setDisplayScaledSizeX(int w) {
+    }
+
+    @Override
+    public void setDisplayScaledSizeY(int h) {
+    }
+
+    @Override
+    public void debug(Throwable t) {
+        logger.log(Level.ERROR, t.getMessage(), t);
+    }
+
+    @Override
+    public void debug(String s) {
+        logger.log(Level.DEBUG, s);
+    }
+
+    @Override
+    public int initAudio() {
+        return 0;
+    }
+
+    @Override
+    public boolean isAudioAvailable() {
+        return false;
+    }
+
+    @Override
+    public void closeAudio() {
+    }
+
+    @Override
+    public void audioWrite(byte[] buffer, int offset, int length) {
+    }
+
+    /**
+     * Writes a frame as a binary PPM (P6)
+     *
+     * @param frame indices into {@link AppleDisplay#getPalette()}
+     * @param scale 1 to {@link FrameScaler#MAX_SCALE}
+     */
+    public static void writePpm(byte[] frame, int scale, OutputStream os) throws IOException {
+        int w = AppleDisplay.DISPLAY_SIZE_X * scale;
+        int h = AppleDisplay.DISPLAY_SIZE_Y * scale;
+        int[] pixels = new int[w * h];
+        FrameScaler.getDefault().scale(frame, AppleDisplay.getPalette(), pixels, scale);
+        os.write(("P6\n" + w + " " + h + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        byte[] rgb = new byte[w * h * 3];
+        for (int i = 0; i < w * h; i++) {
+            int pixel = pixels[i];
+            rgb[i * 3] = (byte) (pixel >> 16);
+            rgb[i * 3 + 1] = (byte) (pixel >> 8);
+            rgb[i * 3 + 2] = (byte) pixel;
+        }
+        os.write(rgb);
+        os.flush();
+    }
+
+    /**
+     * Decodes a non interlaced 8 bit RGB or RGBA PNG into ARGB pixels,
+     * just enough for the character set without loading ImageIO.
+     *
+     * @param w columns to decode
+     * @param h rows to decode
+     * @param s scan size of the buffer
+     */
+    static void readPng(byte[] png, int[] buffer, int w, int h, int s) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(png);
+        if (in.getLong() != 0x89504e470d0a1a0aL) {
+            throw new IOException("not a png");
+        }
+
+        int width = 0, height = 0, bpp = 0;
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        while (in.remaining() >= 12) {
+            int length = in.getInt();
+            int type = in.getInt();
+            int start = in.position();
+            if (type == 0x49484452) { // IHDR
+                width = in.getInt();
+                height = in.getInt();
+                int depth = in.get();
+                int colorType = in.get();
+                in.get(); // compression
+                in.get(); // filter
+                int interlace = in.get();
+                if (depth != 8 || (colorType != 2 && colorType != 6) || interlace != 0) {
+                    throw new IOException("unsupported png: depth " + depth + ", color type " + colorType + ", interlace " + interlace);
+                }
+                bpp = colorType == 2 ? 3 : 4;
+            } else if (type == 0x49444154) { // IDAT
+                idat.write(png, start, length);
+            } else if (type == 0x49454e44) { // IEND
+                break;
+            }
+            in.position(start + length + 4); // skip crc
+        }
+
+        int stride = width * bpp;
+        byte[] raw;
+        try (InputStream is = new InflaterInputStream(new ByteArrayInputStream(idat.toByteArray()))) {
+            raw = is.readNBytes(height * (stride + 1));
+        }
+        if (raw.length != height * (stride + 1)) {
+            throw new IOException("short png data");
+        }
+
+        byte[] prior = new byte[stride];
+        byte[] line = new byte[stride];
+        for (int y = 0; y < height; y++) {
+            int offset = y * (stride + 1);
+            int filter = raw[offset++];
+            for (int x = 0; x < stride; x++) {
+                int a = x >= bpp ? line[x - bpp] & 0xff : 0;
+                int b = prior[x] & 0xff;
+                int c = x >= bpp ? prior[x - bpp] & 0xff : 0;
+                int value = raw[offset + x] & 0xff;
+                value += switch (filter) {
+                    case 0 -> 0;
+                    case 1 -> a;
+                    case 2 -> b;
+                    case 3 -> (a + b) >> 1;
+                    case 4 -> paeth(a, b, c);
+                    default -> throw new IOException("unknown png filter: " + filter);
+                };
+                line[x] = (byte) value;
+            }
+
+            if (y < h) {
+                for (int x = 0; x < Math.min(w, width); x++) {
+                    int i = x * bpp;
+                    buffer[y * s + x] = 0xff000000 | (line[i] & 0xff) << 16 | (line[i + 1] & 0xff) << 8 | (line[i + 2] & 0xff);
+                }
+            }
+
+            byte[] t = prior;
+            prior = line;
+            line = t;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+}
@@ -17,7 +17,9 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
@@ -26,8 +28,10 @@ import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPInputStream;
 import javax.imageio.ImageIO;
 import javax.sound.sampled.AudioFormat;
@@ -552,7 +556,11 @@ logger.log(Level.DEBUG, "audio length: " + length + "\n" + StringUtil.getDump(bu
         /** */
         private final boolean debug;
 
-        final BufferedImage displayImage;
+        /** display images by their frame buffer */
+        final Map<byte[], BufferedImage> displayImages = new ConcurrentHashMap<>();
+        /** display pixels are palette indices, they become RGB when drawn scaled */
+        final IndexColorModel displayColorModel =
+                new IndexColorModel(8, AppleDisplay.PALETTE_SIZE, AppleDisplay.getPalette(), 0, false, -1, DataBuffer.TYPE_BYTE);
         final BufferedImage charSetSource;
         final Path root;
         final int scale;
@@ -566,7 +574,6 @@ logger.log(Level.DEBUG, "audio length: " + length + "\n" + StringUtil.getDump(bu
             game.setDao(dao);
 
             //
-            displayImage = new BufferedImage(AppleDisplay.DISPLAY_SIZE_X, AppleDisplay.DISPLAY_SIZE_Y, BufferedImage.TYPE_INT_RGB);
             charSetSource = ImageIO.read(AppleIIApp.class.getResource("/character_set.png"));
 
             debug = "true".equals(dao.getParameter("debugMode"));
@@ -618,6 +625,7 @@ logger.log(Level.DEBUG, "audio length: " + length + "\n" + StringUtil.getDump(bu
             /** */
             void paint(Graphics2D g) {
 
+                BufferedImage displayImage = displayImages.get(game.getFrameBuffer().getFrame());
                 if (displayImage != null) {
                     g.drawImage(displayImage,
                             0, 0, displayScaledSizeX, displayScaledSizeY,
@@ -691,8 +699,29 @@ logger.log(Level.DEBUG, "audio length: " + length + "\n" + StringUtil.getDump(bu
         }
 
         @Override
-        public int[] createImageBuffer() {
-            return ((DataBufferInt) displayImage.getRaster().getDataBuffer()).getData();
+        public byte[] createImageBuffer() {
+            BufferedImage displayImage = new BufferedImage(AppleDisplay.DISPLAY_SIZE_X, AppleDisplay.DISPLAY_SIZE_Y, BufferedImage.TYPE_BYTE_INDEXED, displayColorModel);
+            byte[] buffer = ((DataBufferByte) displayImage.getRaster().getDataBuffer()).getData();
+            displayImages.put(buffer, displayImage);
+            return buffer;
+        }
+
+        @Override
+        public void repaintDisplay(int x, int y, int w, int h) {
+            // The stat info is painted with the whole view
+            if (gameVC == null || game.isStatMode()) {
+                repaint();
+                return;
+            }
+
+            // Only the scaled region is painted, drawImage is clipped to it
+            int sizeX = gameVC.displayScaledSizeX;
+            int sizeY = gameVC.displayScaledSizeY;
+            int left = x * sizeX / AppleDisplay.DISPLAY_SIZE_X;
+            int top = y * sizeY / AppleDisplay.DISPLAY_SIZE_Y;
+            int right = ((x + w) * sizeX + AppleDisplay.DISPLAY_SIZE_X - 1) / AppleDisplay.DISPLAY_SIZE_X;
+            int bottom = ((y + h) * sizeY + AppleDisplay.DISPLAY_SIZE_Y - 1) / AppleDisplay.DISPLAY_SIZE_Y;
+            repaint(left, top, right - left, bottom - top);
         }
 
         @Override